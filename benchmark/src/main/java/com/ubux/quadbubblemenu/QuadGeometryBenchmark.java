@@ -0,0 +1,72 @@
+package com.ubux.quadbubblemenu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The quadrant geometry behind {@code QuadBubbleMenu#onMeasure} and
+ * {@code QuadBubbleMenu#onLayout}: computing it when any input changes,
+ * looking up the cached one on every other pass, and hit-testing touches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuadGeometryBenchmark {
+
+    private static final int ITEM_RADIUS = 60;
+    private static final int ITEM_SPACE = 24;
+    private static final int MIN_DISTANCE_TO_AXIS_VIEW = 48;
+
+    @Param({"1", "2", "5", "20", "100"})
+    public int itemCount;
+
+    @Param({"true", "false"})
+    public boolean isAxisUnderItems;
+
+    @Param({"false", "true"})
+    public boolean isMultiRing;
+
+    private QuadGeometry mGeometry;
+    private float mTouchX;
+    private float mTouchY;
+
+    @Setup
+    public void setUp(){
+        mGeometry = compute();
+        // The last item, which a linear walk over children reaches last.
+        mTouchX = mGeometry.itemCenters[2*itemCount-2];
+        mTouchY = mGeometry.itemCenters[2*itemCount-1];
+    }
+
+    @Benchmark
+    public QuadGeometry compute(){
+        return new QuadGeometry(itemCount, ITEM_RADIUS, ITEM_SPACE, MIN_DISTANCE_TO_AXIS_VIEW,
+                isAxisUnderItems, true, isMultiRing);
+    }
+
+    @Benchmark
+    public boolean cachedLookup(){
+        return mGeometry.matches(itemCount, ITEM_RADIUS, ITEM_SPACE, MIN_DISTANCE_TO_AXIS_VIEW,
+                isAxisUnderItems, true, isMultiRing);
+    }
+
+    @Benchmark
+    public int findItemAt(){
+        return mGeometry.findItemAt(mTouchX, mTouchY, ITEM_SPACE/2);
+    }
+}
@@ -0,0 +1,65 @@
+package com.ubux.quadbubblemenu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Per-frame work of an expand/collapse animation which runs without the
+ * Android runtime: the bounds of every item bubble at its progress, which
+ * each frame computes to invalidate the moved bubbles. Stepping the motion
+ * itself needs interpolators, so the allocations of whole toggles are
+ * budgeted by {@code QuadBubbleMenuPerformanceTest} instead. Run it with the
+ * gc profiler, e.g. {@code ./gradlew :benchmark:jmh -PjmhArgs='-prof gc ToggleAnimation'};
+ * gc.alloc.rate.norm should stay at 0.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToggleAnimationBenchmark {
+
+    private static final int ITEM_RADIUS = 60;
+    private static final int ITEM_SPACE = 24;
+    private static final int MIN_DISTANCE_TO_AXIS_VIEW = 48;
+
+    @Param({"2", "5", "20", "100"})
+    public int itemCount;
+
+    private QuadGeometry mGeometry;
+    /**
+     * Items staggered across the whole animation, as half way through an expand.
+     */
+    private float[] mProgress;
+    private int[] mBounds;
+
+    @Setup
+    public void setUp(){
+        mGeometry = new QuadGeometry(itemCount, ITEM_RADIUS, ITEM_SPACE,
+                MIN_DISTANCE_TO_AXIS_VIEW, true, true);
+        mProgress = new float[itemCount];
+        for (int i=0; i<itemCount; ++i){
+            mProgress[i] = (float)(i+1)/itemCount;
+        }
+        mBounds = new int[4*itemCount];
+    }
+
+    @Benchmark
+    public int[] itemBoundsPerFrame(){
+        mGeometry.getItemBounds(mProgress, itemCount, mBounds);
+        return mBounds;
+    }
+}
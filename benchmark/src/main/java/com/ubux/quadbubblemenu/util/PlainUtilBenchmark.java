@@ -0,0 +1,52 @@
+package com.ubux.quadbubblemenu.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * {@code CommonUtil#calculateInSampleSize} and {@code CommonUtil#isFileNameLegal},
+ * which delegate to {@link PlainUtil}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlainUtilBenchmark {
+
+    @State(Scope.Thread)
+    public static class Size {
+        /**
+         * Source sizes from an icon-sized image to a camera photo.
+         */
+        @Param({"128", "1024", "4096"})
+        public int sourceSize;
+    }
+
+    @State(Scope.Thread)
+    public static class Name {
+        @Param({"icon_1024x1024.png", "photos/icon.png"})
+        public String fileName;
+    }
+
+    @Benchmark
+    public int calculateInSampleSize(Size size){
+        return PlainUtil.calculateInSampleSize(size.sourceSize, size.sourceSize*3/4, 120, 120);
+    }
+
+    @Benchmark
+    public boolean isFileNameLegal(Name name){
+        return PlainUtil.isFileNameLegal(name.fileName);
+    }
+}
@@ -0,0 +1,111 @@
+package com.ubux.quadbubblemenu;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.ubux.quadbubblemenu.util.BitmapPool;
+import com.ubux.quadbubblemenu.util.CommonUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares loading an item icon from {@link IconDiskCache} with decoding,
+ * scaling and rounding it from its source, as on a cold start: each cached
+ * icon is read once, by a cache instance that has not been used yet. The
+ * files may still be in the kernel's page cache, which a test cannot drop.
+ */
+@RunWith(AndroidJUnit4.class)
+public class IconLoadBenchmark {
+
+    private static final String TAG = IconLoadBenchmark.class.getSimpleName();
+
+    private static final int SOURCE_SIZE = 1024;
+    private static final int ICON_SIZE = 120;
+    private static final int ICON_COUNT = 50;
+
+    private byte[] mSourceBytes;
+    private File mDir;
+    private int mDensityDpi;
+    private BitmapPool mPool;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = InstrumentationRegistry.getTargetContext();
+        Bitmap source = Bitmap.createBitmap(SOURCE_SIZE, SOURCE_SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(source);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        for (int i=0; i<16; ++i){
+            paint.setColor(Color.rgb(16*i, 255-16*i, 128));
+            canvas.drawCircle(64*i, 64*i, 256, paint);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        source.compress(Bitmap.CompressFormat.PNG, 100, out);
+        source.recycle();
+        mSourceBytes = out.toByteArray();
+
+        mDir = new File(context.getCacheDir(), "icon_load_benchmark");
+        mDensityDpi = context.getResources().getDisplayMetrics().densityDpi;
+        new IconDiskCache(mDir, mDensityDpi, 0).clear();
+        mPool = new BitmapPool(0);
+    }
+
+    @Test
+    public void diskCacheVersusDecode() throws Exception {
+        IconDiskCache writer = new IconDiskCache(mDir, mDensityDpi, 0);
+        final long[] decodeNanos = new long[ICON_COUNT];
+        for (int i=0; i<ICON_COUNT; ++i){
+            final long start = System.nanoTime();
+            Bitmap bm = decodeFromSource();
+            decodeNanos[i] = System.nanoTime()-start;
+            writer.put("benchmark"+i, bm);
+            bm.recycle();
+        }
+
+        IconDiskCache reader = new IconDiskCache(mDir, mDensityDpi, 0);
+        final long[] diskNanos = new long[ICON_COUNT];
+        for (int i=0; i<ICON_COUNT; ++i){
+            final long start = System.nanoTime();
+            Bitmap bm = reader.get("benchmark"+i, mPool);
+            diskNanos[i] = System.nanoTime()-start;
+            assertNotNull(bm);
+            bm.recycle();
+        }
+        reader.clear();
+
+        final long decodeMedian = median(decodeNanos);
+        final long diskMedian = median(diskNanos);
+        Log.i(TAG, "Median decode, scale and round: "+decodeMedian/1000
+                +"us; first disk cache read: "+diskMedian/1000+"us");
+        assertTrue("Disk cache read "+diskMedian/1000+"us is no faster than decoding "
+                +decodeMedian/1000+"us", diskMedian<decodeMedian);
+    }
+
+    private static long median(long[] nanos){
+        long[] sorted = Arrays.copyOf(nanos, nanos.length);
+        Arrays.sort(sorted);
+        return sorted[sorted.length/2];
+    }
+
+    private Bitmap decodeFromSource(){
+        Bitmap bm = CommonUtil.scaleToRequestDimension(mSourceBytes, ICON_SIZE, ICON_SIZE);
+        bm = CommonUtil.scaleToExactDimension(bm, ICON_SIZE, ICON_SIZE);
+        Bitmap rounded = CommonUtil.roundBitmap(bm);
+        bm.recycle();
+        return rounded;
+    }
+}
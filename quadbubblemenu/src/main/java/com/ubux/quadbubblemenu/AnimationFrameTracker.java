@@ -0,0 +1,79 @@
+package com.ubux.quadbubblemenu;
+
+import android.annotation.TargetApi;
+import android.view.Choreographer;
+
+
+/**
+ * Counts frames of an expand/collapse animation by Choreographer frame
+ * callbacks, and reports them to the menu's {@link QuadBubbleMenu.MetricsListener}.
+ * Created only when a listener is set. Must be used on the UI thread only.
+ */
+@TargetApi(16)
+final class AnimationFrameTracker implements Choreographer.FrameCallback {
+
+    private final QuadBubbleMenu mMenu;
+    private final long mFrameIntervalNanos;
+
+    private boolean mIsTracking = false;
+    private boolean mIsExpanding;
+    private long mClickNanos;
+    private long mLastFrameNanos;
+    private int mFrameCount;
+    private int mDroppedFrameCount;
+
+    AnimationFrameTracker(QuadBubbleMenu menu, float refreshRate){
+        mMenu = menu;
+        mFrameIntervalNanos = (long)(1000000000/(refreshRate>0? refreshRate: 60));
+    }
+
+    /**
+     * Stops tracking the previous animation if any, then waits for the first
+     * frame of the new one.
+     * @param clickNanos {@link System#nanoTime()} when the axis view was clicked
+     */
+    void start(boolean isExpanding, long clickNanos){
+        stop();
+        mIsTracking = true;
+        mIsExpanding = isExpanding;
+        mClickNanos = clickNanos;
+        mLastFrameNanos = 0;
+        mFrameCount = mDroppedFrameCount = 0;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    void stop(){
+        if (!mIsTracking){
+            return;
+        }
+        mIsTracking = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+        QuadBubbleMenu.MetricsListener listener = mMenu.getMetricsListener();
+        if (listener!=null){
+            listener.onAnimationFinished(mMenu, mIsExpanding, mFrameCount, mDroppedFrameCount);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mIsTracking){
+            return;
+        }
+        ++mFrameCount;
+        if (mLastFrameNanos==0){
+            QuadBubbleMenu.MetricsListener listener = mMenu.getMetricsListener();
+            if (listener!=null){
+                listener.onAnimationStarted(mMenu, mIsExpanding, System.nanoTime()-mClickNanos);
+            }
+        }else {
+            // Vsyncs passed without a frame are dropped frames.
+            final long missed = (frameTimeNanos-mLastFrameNanos+mFrameIntervalNanos/2)
+                    /mFrameIntervalNanos-1;
+            if (missed>0){
+                mDroppedFrameCount += missed;
+            }
+        }
+        mLastFrameNanos = frameTimeNanos;
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+}
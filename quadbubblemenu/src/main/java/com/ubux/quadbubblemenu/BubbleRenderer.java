@@ -0,0 +1,236 @@
+package com.ubux.quadbubblemenu;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Shader;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.ColorDrawable;
+import android.graphics.drawable.Drawable;
+import android.view.View;
+
+import com.ubux.quadbubblemenu.util.UiUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Draws item bubbles of a {@link QuadBubbleMenu} in canvas render mode, in
+ * place of item views. Every item keeps a shader of its icon, so drawing a
+ * frame is one circle per item. A progress change repaints only the region
+ * which items move through. Must be used on the UI thread only.
+ */
+final class BubbleRenderer {
+
+    private final View mHost;
+    private final int mItemRadius;
+    private final InvalidationTracker mInvalidationTracker;
+    /**
+     * Owns the progress of each item.
+     */
+    private final MotionEngine mMotionEngine;
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final Matrix mShaderMatrix = new Matrix();
+
+    /**
+     * One slot for each item, in the order of items.
+     */
+    private final List<Slot> mSlots = new ArrayList<>();
+
+    /**
+     * Geometry of the latest frame, which progress changes are invalidated by.
+     */
+    private QuadGeometry mDrawnGeometry = null;
+
+    BubbleRenderer(View host, int itemRadius, InvalidationTracker invalidationTracker,
+                   MotionEngine motionEngine){
+        mHost = host;
+        mItemRadius = itemRadius;
+        mInvalidationTracker = invalidationTracker;
+        mMotionEngine = motionEngine;
+    }
+
+    /**
+     * Repaint each moved item's bounds in the previous frame and in this one.
+     */
+    void onItemsMoved(){
+        final QuadGeometry geometry = mDrawnGeometry;
+        if (geometry==null || geometry.itemCount!=mSlots.size()){
+            mHost.invalidate();
+            return;
+        }
+        final int count = Math.min(geometry.itemCount, mMotionEngine.getItemCount());
+        geometry.getItemBounds(mMotionEngine.getProgress(), count,
+                mInvalidationTracker.obtainItemBounds(count));
+        mInvalidationTracker.onFrame(mHost);
+    }
+
+    void addSlot(){
+        mSlots.add(new Slot());
+    }
+
+    void removeSlots(int start, int count){
+        for (int i=start; i<start+count; ++i){
+            IconLoader.cancel(mSlots.get(i));
+        }
+        mSlots.subList(start, start+count).clear();
+        mHost.invalidate();
+    }
+
+    void clear(){
+        removeSlots(0, mSlots.size());
+    }
+
+    void bind(int position, QuadBubbleMenu.MenuItem item){
+        mSlots.get(position).bind(item);
+        mHost.invalidate();
+    }
+
+    /**
+     * Draw items at their current progress, from their centers in the
+     * geometry toward the axis view.
+     */
+    void draw(Canvas canvas, QuadGeometry geometry){
+        mDrawnGeometry = geometry;
+        final float[] progress = mMotionEngine.getProgress();
+        final float[] centers = geometry.itemCenters;
+        final float[] offsets = geometry.collapsedOffsets;
+        final int count = Math.min(Math.min(mSlots.size(), geometry.itemCount),
+                mMotionEngine.getItemCount());
+        for (int i=0; i<count; ++i){
+            if (progress[i]<=0){
+                // Hidden under the axis view.
+                continue;
+            }
+            final float remaining = 1-progress[i];
+            mSlots.get(i).draw(canvas, centers[2*i]+offsets[2*i]*remaining,
+                    centers[2*i+1]+offsets[2*i+1]*remaining);
+        }
+    }
+
+    /**
+     * @param slop extra distance around each item which still hits it
+     * @return index of the item under (x, y) when expanded, or -1 if none
+     */
+    int findItemAt(float x, float y, QuadGeometry geometry, float slop){
+        final int index = geometry.findItemAt(x, y, slop);
+        return index<mSlots.size()? index: -1;
+    }
+
+    void getItemBounds(int index, QuadGeometry geometry, Rect outBounds){
+        final float remaining = index<mMotionEngine.getItemCount()?
+                1-mMotionEngine.getProgress()[index]: 0;
+        final int cx = (int)(geometry.itemCenters[2*index]
+                +geometry.collapsedOffsets[2*index]*remaining);
+        final int cy = (int)(geometry.itemCenters[2*index+1]
+                +geometry.collapsedOffsets[2*index+1]*remaining);
+        outBounds.set(cx-mItemRadius, cy-mItemRadius, cx+mItemRadius, cy+mItemRadius);
+    }
+
+    /**
+     * Icon of one item, drawn by a shader of its bitmap or a solid color.
+     * Bitmaps are center-cropped to the bubble.
+     */
+    private final class Slot implements IconLoader.Target {
+
+        private BitmapShader mShader = null;
+        private int mBitmapWidth;
+        private int mBitmapHeight;
+        private int mColor;
+
+        /**
+         * Rendered from an icon which is neither a bitmap nor a color, and
+         * reused by later binds.
+         */
+        private Bitmap mRenderedIcon = null;
+        private IconLoader.Task mIconTask = null;
+
+        void bind(QuadBubbleMenu.MenuItem item){
+            IconLoader.cancel(this);
+            setIcon(item.getIcon());
+            if (item.getIconSource()!=null){
+                IconLoader.load(this, item.getIconSource(), 2*mItemRadius);
+            }
+        }
+
+        private void setIcon(Drawable icon){
+            if (icon==null){
+                setColor(UiUtil.getColor(getContext(), R.color.quad_bubble_menu_item_default));
+            }else if (icon instanceof ColorDrawable){
+                setColor(((ColorDrawable)icon).getColor());
+            }else if (icon instanceof BitmapDrawable
+                    && ((BitmapDrawable)icon).getBitmap()!=null){
+                setBitmap(((BitmapDrawable)icon).getBitmap());
+            }else {
+                setBitmap(render(icon));
+            }
+        }
+
+        private Bitmap render(Drawable icon){
+            final int size = 2*mItemRadius;
+            if (mRenderedIcon==null){
+                mRenderedIcon = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+            }else {
+                mRenderedIcon.eraseColor(0);
+            }
+            final Rect oldBounds = icon.copyBounds();
+            icon.setBounds(0, 0, size, size);
+            icon.draw(new Canvas(mRenderedIcon));
+            icon.setBounds(oldBounds);
+            return mRenderedIcon;
+        }
+
+        private void setColor(int color){
+            mShader = null;
+            mColor = color;
+        }
+
+        private void setBitmap(Bitmap bm){
+            mShader = new BitmapShader(bm, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+            mBitmapWidth = bm.getWidth();
+            mBitmapHeight = bm.getHeight();
+        }
+
+        void draw(Canvas canvas, float cx, float cy){
+            if (mShader==null){
+                mPaint.setColor(mColor);
+                canvas.drawCircle(cx, cy, mItemRadius, mPaint);
+                return;
+            }
+            final float scale = 2f*mItemRadius/Math.min(mBitmapWidth, mBitmapHeight);
+            mShaderMatrix.setScale(scale, scale);
+            mShaderMatrix.postTranslate(cx-mBitmapWidth*scale/2, cy-mBitmapHeight*scale/2);
+            mShader.setLocalMatrix(mShaderMatrix);
+            mPaint.setAlpha(0xff);
+            mPaint.setShader(mShader);
+            canvas.drawCircle(cx, cy, mItemRadius, mPaint);
+            mPaint.setShader(null);
+        }
+
+        @Override
+        public Context getContext() {
+            return mHost.getContext();
+        }
+
+        @Override
+        public IconLoader.Task getIconTask() {
+            return mIconTask;
+        }
+
+        @Override
+        public void setIconTask(IconLoader.Task task) {
+            mIconTask = task;
+        }
+
+        @Override
+        public void onIconLoaded(Bitmap icon) {
+            setBitmap(icon);
+            mHost.invalidate();
+        }
+    }
+}
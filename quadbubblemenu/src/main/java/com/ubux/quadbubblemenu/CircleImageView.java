@@ -1,22 +1,47 @@
 package com.ubux.quadbubblemenu;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
+import android.graphics.Outline;
+import android.graphics.Path;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewOutlineProvider;
 import android.widget.ImageView;
 
 
-class CircleImageView extends ImageView {
+class CircleImageView extends ImageView implements IconLoader.Target {
 
     private static final String TAG = CircleImageView.class.getSimpleName();
 
-    private Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    /**
+     * Circle covering this view's bounds. Rebuilt in {@link #onSizeChanged}
+     * so that {@link #draw(Canvas)} never allocates.
+     */
+    private final Path mClipPath = new Path();
+
+    /**
+     * Times of {@link #draw(Canvas)} being invoked, used to count redraws
+     * during an animation.
+     */
+    private int mDrawCount = 0;
+
+    /**
+     * Pending icon load, accessed on the UI thread only.
+     */
+    private IconLoader.Task mIconTask = null;
 
     public CircleImageView(Context context) {
         super(context);
+        if (Build.VERSION.SDK_INT >= 21) {
+            setOutlineProvider(CircleOutlineProvider.INSTANCE);
+            setClipToOutline(true);
+        }else if (Build.VERSION.SDK_INT < 18) {
+            // Canvas#clipPath() is not supported by hardware canvas before api 18.
+            setLayerType(LAYER_TYPE_SOFTWARE, null);
+        }
     }
 
     @Override
@@ -27,26 +52,54 @@ class CircleImageView extends ImageView {
         setMeasuredDimension(radiusMeasureSize, radiusMeasureSize);
     }
 
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mClipPath.reset();
+        mClipPath.addCircle(w/2f, h/2f, Math.min(w, h)/2f, Path.Direction.CW);
+    }
+
     @Override
     public void draw(Canvas viewCanvas) {
-        final int EDGE_SIZE = viewCanvas.getWidth();
-
-        // Draw this View's things.
-        Bitmap fgBm = Bitmap.createBitmap(EDGE_SIZE, EDGE_SIZE, Bitmap.Config.ARGB_8888);
-        Canvas fgCanvas = new Canvas(fgBm);
-        super.draw(fgCanvas);
-
-        // Transfer to a special shape.
-        Bitmap shapedBm = Bitmap.createBitmap(EDGE_SIZE, EDGE_SIZE, Bitmap.Config.ARGB_8888);
-        Canvas shapedCanvas = new Canvas(shapedBm);
-        shapedCanvas.drawCircle(EDGE_SIZE/2, EDGE_SIZE/2, EDGE_SIZE/2, mPaint);
-        mPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-        shapedCanvas.drawBitmap(fgBm, 0, 0, mPaint);
-        mPaint.setXfermode(null);
-
-        // Move drawn things to View's canvas.
-        viewCanvas.drawBitmap(shapedBm, 0, 0, mPaint);
-        fgBm.recycle();
-        shapedBm.recycle();
+        ++mDrawCount;
+        if (Build.VERSION.SDK_INT >= 21 && viewCanvas.isHardwareAccelerated()){
+            // Already clipped by the outline.
+            super.draw(viewCanvas);
+            return;
+        }
+        final int saveCount = viewCanvas.save();
+        viewCanvas.clipPath(mClipPath);
+        super.draw(viewCanvas);
+        viewCanvas.restoreToCount(saveCount);
+    }
+
+    int getDrawCount(){
+        return mDrawCount;
+    }
+
+    @Override
+    public IconLoader.Task getIconTask() {
+        return mIconTask;
+    }
+
+    @Override
+    public void setIconTask(IconLoader.Task task) {
+        mIconTask = task;
+    }
+
+    @Override
+    public void onIconLoaded(Bitmap icon) {
+        setImageBitmap(icon);
+    }
+
+    @TargetApi(21)
+    private static class CircleOutlineProvider extends ViewOutlineProvider {
+
+        static final CircleOutlineProvider INSTANCE = new CircleOutlineProvider();
+
+        @Override
+        public void getOutline(View view, Outline outline) {
+            outline.setOval(0, 0, view.getWidth(), view.getHeight());
+        }
     }
 }
@@ -0,0 +1,108 @@
+package com.ubux.quadbubblemenu;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+
+
+/**
+ * Memory cache of decoded item icons shared by all menus, keyed by icon source,
+ * size and shape. Bounded by bytes of cached bitmaps and trimmed when the
+ * system is running low on memory.
+ */
+public final class IconCache {
+
+    static final int SHAPE_SQUARE = 0;
+    static final int SHAPE_CIRCLE = 1;
+
+    private static IconCache sInstance = null;
+
+    private final LruCache<String, Bitmap> mCache;
+
+    public static synchronized IconCache getInstance(Context context){
+        if (sInstance==null){
+            sInstance = new IconCache((int)(Runtime.getRuntime().maxMemory()/16));
+            context.getApplicationContext().registerComponentCallbacks(sInstance.mTrimCallbacks);
+        }
+        return sInstance;
+    }
+
+    private IconCache(int maxSizeInBytes){
+        mCache = new LruCache<String, Bitmap>(maxSizeInBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return getByteCount(value);
+            }
+        };
+    }
+
+    static String createKey(IconSource source, int size, int shape){
+        return source.getKey()+'|'+size+'|'+shape;
+    }
+
+    Bitmap get(String key){
+        return mCache.get(key);
+    }
+
+    void put(String key, Bitmap bm){
+        mCache.put(key, bm);
+    }
+
+    /**
+     * Cached bitmaps exceeding the new size are evicted.
+     */
+    public void setMaxSizeInBytes(int maxSizeInBytes){
+        mCache.resize(maxSizeInBytes);
+    }
+    public int getMaxSizeInBytes(){
+        return mCache.maxSize();
+    }
+    public int getSizeInBytes(){
+        return mCache.size();
+    }
+
+    public int getHitCount(){
+        return mCache.hitCount();
+    }
+    public int getMissCount(){
+        return mCache.missCount();
+    }
+    public int getEvictionCount(){
+        return mCache.evictionCount();
+    }
+
+    public void clear(){
+        mCache.evictAll();
+    }
+
+    private static int getByteCount(Bitmap bm){
+        if (Build.VERSION.SDK_INT >= 19){
+            return bm.getAllocationByteCount();
+        }
+        return bm.getByteCount();
+    }
+
+    private final ComponentCallbacks2 mTrimCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_MODERATE){
+                mCache.evictAll();
+            }else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW
+                    || level == TRIM_MEMORY_RUNNING_CRITICAL){
+                mCache.trimToSize(mCache.maxSize()/2);
+            }
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            mCache.evictAll();
+        }
+    };
+}
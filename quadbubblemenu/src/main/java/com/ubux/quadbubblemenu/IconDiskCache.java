@@ -0,0 +1,272 @@
+package com.ubux.quadbubblemenu;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.ubux.quadbubblemenu.util.BitmapPool;
+import com.ubux.quadbubblemenu.util.CommonUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Disk cache of pre-rendered item icons, stored as raw pixels so that they can
+ * be mapped and copied into bitmaps on cold start without decoding or
+ * rounding. Keyed by icon source, screen density, size and shape, and by
+ * the app's install time, since resource ids change between builds.
+ * Thread safe.
+ */
+public final class IconDiskCache {
+
+    private static final String TAG = IconDiskCache.class.getSimpleName();
+
+    private static final String DIR_NAME = "quad_bubble_menu_icons";
+    private static final int MAGIC = 0x51424d49;
+    private static final int HEADER_SIZE = 16;
+    private static final int DEFAULT_MAX_SIZE = 8*1024*1024;
+
+    private static IconDiskCache sInstance = null;
+
+    private final File mDir;
+    private final int mDensityDpi;
+    private final long mAppVersion;
+    private int mMaxSizeInBytes = DEFAULT_MAX_SIZE;
+    /**
+     * Sizes of cached files by name, least recently used first. Listed from
+     * the directory once, on first use, and kept up to date after.
+     */
+    private LinkedHashMap<String, Long> mEntries = null;
+    private long mSize = 0;
+
+    public static synchronized IconDiskCache getInstance(Context context){
+        if (sInstance==null){
+            sInstance = new IconDiskCache(new File(context.getCacheDir(), DIR_NAME),
+                    context.getResources().getDisplayMetrics().densityDpi,
+                    getAppVersion(context));
+        }
+        return sInstance;
+    }
+
+    /**
+     * @param appVersion changes whenever the app is updated; files cached by
+     *                   other versions are never hit and age out
+     */
+    IconDiskCache(File dir, int densityDpi, long appVersion){
+        mDir = dir;
+        mDensityDpi = densityDpi;
+        mAppVersion = appVersion;
+    }
+
+    /**
+     * Unlike {@link IconCache#createKey(IconSource, int, int)}, this may read
+     * the source's file or hash its bytes, so invoke it on a background thread.
+     */
+    static String createKey(IconSource source, int size, int shape){
+        return source.getDiskKey()+'|'+size+'|'+shape;
+    }
+
+    private static long getAppVersion(Context context){
+        try {
+            return context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        }catch (PackageManager.NameNotFoundException e){
+            return 0;
+        }
+    }
+
+    /**
+     * Least recently used icons are deleted when exceeding the new size.
+     */
+    public synchronized void setMaxSizeInBytes(int maxSizeInBytes){
+        mMaxSizeInBytes = maxSizeInBytes;
+        trimToSize();
+    }
+    public synchronized int getMaxSizeInBytes(){
+        return mMaxSizeInBytes;
+    }
+
+    public synchronized void clear(){
+        File[] files = mDir.listFiles();
+        if (files!=null){
+            for (File f: files){
+                //noinspection ResultOfMethodCallIgnored
+                f.delete();
+            }
+        }
+        mEntries = new LinkedHashMap<>(16, 0.75f, true);
+        mSize = 0;
+    }
+
+    /**
+     * @return the cached icon or null if absent or corrupted
+     */
+    Bitmap get(String key, BitmapPool pool){
+        File file = getFile(key);
+        if (!file.isFile()){
+            synchronized (this){
+                // Deleted by others, e.g. the system clearing the cache directory.
+                removeEntry(file.getName());
+            }
+            return null;
+        }
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.nativeOrder());
+            if (buffer.remaining()<HEADER_SIZE || buffer.getInt()!=MAGIC){
+                return null;
+            }
+            final int width = buffer.getInt();
+            final int height = buffer.getInt();
+            final Bitmap.Config config = Bitmap.Config.values()[buffer.getInt()];
+            Bitmap bm = pool.get(width, height, config);
+            if (bm==null){
+                bm = Bitmap.createBitmap(width, height, config);
+            }
+            if (buffer.remaining()<bm.getRowBytes()*height){
+                pool.put(bm);
+                return null;
+            }
+            bm.copyPixelsFromBuffer(buffer);
+            // Keeps the order of use for the next run.
+            //noinspection ResultOfMethodCallIgnored
+            file.setLastModified(System.currentTimeMillis());
+            synchronized (this){
+                loadEntriesIfNeeded();
+                mEntries.get(file.getName());
+            }
+            return bm;
+        }catch (IOException|RuntimeException e){
+            Log.w(TAG, "Failed to read icon "+file, e);
+            return null;
+        }finally {
+            CommonUtil.quietClose(raf);
+        }
+    }
+
+    void put(String key, Bitmap bm){
+        File file = getFile(key);
+        if (file.isFile()){
+            return;
+        }
+        if (!mDir.isDirectory() && !mDir.mkdirs()){
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE+bm.getRowBytes()*bm.getHeight());
+        buffer.order(ByteOrder.nativeOrder());
+        buffer.putInt(MAGIC).putInt(bm.getWidth()).putInt(bm.getHeight())
+                .putInt(bm.getConfig().ordinal());
+        bm.copyPixelsToBuffer(buffer);
+        buffer.flip();
+
+        // Written to a temporary file first, so that readers never see a partial icon.
+        File tmpFile = new File(mDir, file.getName()+"."+Thread.currentThread().getId()+".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tmpFile);
+            FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()){
+                channel.write(buffer);
+            }
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(file)){
+                //noinspection ResultOfMethodCallIgnored
+                tmpFile.delete();
+                return;
+            }
+        }catch (IOException e){
+            Log.w(TAG, "Failed to write icon "+file, e);
+            //noinspection ResultOfMethodCallIgnored
+            tmpFile.delete();
+            return;
+        }finally {
+            CommonUtil.quietClose(out);
+        }
+        synchronized (this){
+            loadEntriesIfNeeded();
+            removeEntry(file.getName());
+            mEntries.put(file.getName(), (long)buffer.limit());
+            mSize += buffer.limit();
+            trimToSize();
+        }
+    }
+
+    /**
+     * List cached files once, so that puts need not stat the whole directory.
+     */
+    private void loadEntriesIfNeeded(){
+        if (mEntries!=null){
+            return;
+        }
+        mEntries = new LinkedHashMap<>(16, 0.75f, true);
+        mSize = 0;
+        File[] files = mDir.listFiles();
+        if (files==null){
+            return;
+        }
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i=0; i<files.length; ++i){
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                long diff = lastModified[lhs]-lastModified[rhs];
+                return diff<0? -1: (diff==0? 0: 1);
+            }
+        });
+        for (Integer i: order){
+            // Temporary files are being written, or left by a crash and never read.
+            if (files[i].getName().endsWith(".px")){
+                final long length = files[i].length();
+                mEntries.put(files[i].getName(), length);
+                mSize += length;
+            }
+        }
+    }
+
+    private void removeEntry(String name){
+        loadEntriesIfNeeded();
+        Long length = mEntries.remove(name);
+        if (length!=null){
+            mSize -= length;
+        }
+    }
+
+    private void trimToSize(){
+        loadEntriesIfNeeded();
+        Iterator<Map.Entry<String, Long>> it = mEntries.entrySet().iterator();
+        while (mSize>mMaxSizeInBytes && it.hasNext()){
+            Map.Entry<String, Long> entry = it.next();
+            //noinspection ResultOfMethodCallIgnored
+            new File(mDir, entry.getKey()).delete();
+            mSize -= entry.getValue();
+            it.remove();
+        }
+    }
+
+    private File getFile(String key){
+        final String fullKey = key+'|'+mDensityDpi+'|'+mAppVersion;
+        return new File(mDir, CommonUtil.md5Hex(fullKey.getBytes(Charset.forName("UTF-8")))+".px");
+    }
+}
@@ -0,0 +1,142 @@
+package com.ubux.quadbubblemenu;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.ubux.quadbubblemenu.util.BitmapPool;
+import com.ubux.quadbubblemenu.util.CommonUtil;
+
+
+/**
+ * Decodes icons of items off the UI thread and posts them back.
+ * Decoded icons are pre-rounded and kept in {@link IconCache} and
+ * {@link IconDiskCache}.
+ */
+final class IconLoader {
+
+    private static final String TAG = IconLoader.class.getSimpleName();
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * What a decoded icon is delivered to, e.g. an item view. Accessed on the
+     * UI thread only.
+     */
+    interface Target {
+        Context getContext();
+        Task getIconTask();
+        void setIconTask(Task task);
+        void onIconLoaded(Bitmap icon);
+    }
+
+    /**
+     * Start decoding the icon for the target, cancelling its previous load.
+     * Must be invoked on the UI thread.
+     */
+    static void load(Target target, IconSource source, int size){
+        cancel(target);
+        IconCache cache = IconCache.getInstance(target.getContext());
+        final int shape = source.isOpaque()? IconCache.SHAPE_SQUARE: IconCache.SHAPE_CIRCLE;
+        String key = IconCache.createKey(source, size, shape);
+        Bitmap cached = cache.get(key);
+        if (cached!=null){
+            target.onIconLoaded(cached);
+            return;
+        }
+        Task task = new Task(target, source, size, shape, cache,
+                IconDiskCache.getInstance(target.getContext()), key);
+        target.setIconTask(task);
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(task);
+    }
+
+    /**
+     * Cancel the pending load of the target if any.
+     * Must be invoked on the UI thread.
+     */
+    static void cancel(Target target){
+        Task task = target.getIconTask();
+        if (task!=null){
+            task.mIsCancelled = true;
+            target.setIconTask(null);
+        }
+    }
+
+    static class Task implements Runnable {
+
+        private final Target mTarget;
+        private final IconSource mSource;
+        private final int mSize;
+        private final int mShape;
+        private final IconCache mCache;
+        private final IconDiskCache mDiskCache;
+        private final String mKey;
+        private volatile boolean mIsCancelled = false;
+
+        private Bitmap mResult = null;
+
+        Task(Target target, IconSource source, int size, int shape, IconCache cache,
+             IconDiskCache diskCache, String key){
+            mTarget = target;
+            mSource = source;
+            mSize = size;
+            mShape = shape;
+            mCache = cache;
+            mDiskCache = diskCache;
+            mKey = key;
+        }
+
+        @Override
+        public void run() {
+            if (mIsCancelled){
+                return;
+            }
+            final BitmapPool pool = BitmapPool.getDefault();
+            // May stat or hash the source, so created here rather than on the UI thread.
+            final String diskKey = IconDiskCache.createKey(mSource, mSize, mShape);
+            Bitmap bm = mDiskCache.get(diskKey, pool);
+            if (bm!=null){
+                deliver(bm);
+                return;
+            }
+            try {
+                bm = mSource.decode(mSize, mSize, pool);
+            }catch (RuntimeException e){
+                Log.w(TAG, "Failed to decode icon.", e);
+            }
+            if (bm==null){
+                return;
+            }
+            if (mIsCancelled){
+                pool.put(bm);
+                return;
+            }
+            bm = CommonUtil.scaleToExactDimension(bm, mSize, mSize, pool);
+            // Opaque icons are kept square and clipped by CircleImageView.
+            bm = mSource.isOpaque()? bm: CommonUtil.roundBitmap(bm, pool);
+            mDiskCache.put(diskKey, bm);
+            deliver(bm);
+        }
+
+        private void deliver(Bitmap bm){
+            mResult = bm;
+            mCache.put(mKey, bm);
+            sMainHandler.post(mDeliverRunnable);
+        }
+
+        private final Runnable mDeliverRunnable = new Runnable() {
+            @Override
+            public void run() {
+                if (!mIsCancelled && mTarget.getIconTask()==Task.this){
+                    mTarget.setIconTask(null);
+                    mTarget.onIconLoaded(mResult);
+                }
+            }
+        };
+    }
+
+    private IconLoader(){}
+}
@@ -0,0 +1,187 @@
+package com.ubux.quadbubblemenu;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+
+import com.ubux.quadbubblemenu.util.BitmapPool;
+import com.ubux.quadbubblemenu.util.CommonUtil;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Where an item's icon is decoded from. The icon is decoded off the UI thread,
+ * to exactly the size of the item view.
+ */
+public abstract class IconSource {
+
+    public static IconSource fromFile(String pathName){
+        return new FileSource(CommonUtil.checkNotNull(pathName));
+    }
+
+    /**
+     * @param bytes must not be modified after passed in
+     */
+    public static IconSource fromBytes(byte[] bytes){
+        return new BytesSource(CommonUtil.checkNotNull(bytes));
+    }
+
+    public static IconSource fromResource(Resources res, int resId){
+        return new ResourceSource(CommonUtil.checkNotNull(res), resId);
+    }
+
+    private Bitmap.Config mDecodeConfig = Bitmap.Config.ARGB_8888;
+
+    IconSource(){}
+
+    /**
+     * Set the config to decode with. Opaque icons may use RGB_565 to halve
+     * their memory; they are kept square and clipped when drawn instead of
+     * being pre-rounded.
+     * @return this source
+     */
+    public IconSource setDecodeConfig(Bitmap.Config config){
+        mDecodeConfig = CommonUtil.checkNotNull(config);
+        return this;
+    }
+    public Bitmap.Config getDecodeConfig(){
+        return mDecodeConfig;
+    }
+
+    /**
+     * @return whether decoded icons keep no alpha channel
+     */
+    boolean isOpaque(){
+        return mDecodeConfig==Bitmap.Config.RGB_565;
+    }
+
+    /**
+     * @return a key identifying this source in {@link IconCache}, which must
+     * not repeat for other content while the app runs. Invoked on the UI
+     * thread, so it must not touch the disk or hash content.
+     */
+    abstract String getKey();
+
+    /**
+     * @return a key identifying decoded content of this source in
+     * {@link IconDiskCache}, which must not repeat for other content across
+     * app runs. Invoked on a background thread.
+     */
+    abstract String getDiskKey();
+
+    /**
+     * Decode a bitmap no smaller than the request size, reusing bitmaps of
+     * the pool if possible. Invoked on a background thread.
+     * @return null if failed
+     */
+    abstract Bitmap decode(int reqWidth, int reqHeight, BitmapPool pool);
+
+    private static class FileSource extends IconSource {
+        private final String mPathName;
+
+        FileSource(String pathName){
+            mPathName = pathName;
+        }
+
+        /**
+         * A file replaced under the same path while the app runs keeps the
+         * icon cached in memory; write new content to a new path instead.
+         */
+        @Override
+        String getKey() {
+            return "file:"+mPathName;
+        }
+
+        /**
+         * The file may be replaced under the same path between runs, so its
+         * size and modification time are part of the key.
+         */
+        @Override
+        String getDiskKey() {
+            final File file = new File(mPathName);
+            return "file:"+mPathName+':'+file.length()+':'+file.lastModified();
+        }
+
+        @Override
+        Bitmap decode(int reqWidth, int reqHeight, BitmapPool pool) {
+            return CommonUtil.scaleToRequestDimension(mPathName, reqWidth, reqHeight,
+                    getDecodeConfig(), pool);
+        }
+    }
+
+    private static class BytesSource extends IconSource {
+        private static final AtomicInteger sNextId = new AtomicInteger();
+
+        private final byte[] mBytes;
+        private final int mId = sNextId.getAndIncrement();
+        private volatile String mDiskKey = null;
+
+        BytesSource(byte[] bytes){
+            mBytes = bytes;
+        }
+
+        /**
+         * Each source is a key of its own, so reuse the source rather than
+         * the bytes to share a cached icon.
+         */
+        @Override
+        String getKey() {
+            return "bytes#"+mId;
+        }
+
+        @Override
+        String getDiskKey() {
+            if (mDiskKey==null){
+                mDiskKey = "bytes:"+CommonUtil.md5Hex(mBytes);
+            }
+            return mDiskKey;
+        }
+
+        @Override
+        Bitmap decode(int reqWidth, int reqHeight, BitmapPool pool) {
+            return CommonUtil.scaleToRequestDimension(mBytes, reqWidth, reqHeight,
+                    getDecodeConfig(), pool);
+        }
+    }
+
+    private static class ResourceSource extends IconSource {
+        private final Resources mRes;
+        private final int mResId;
+        private volatile String mDiskKey = null;
+
+        ResourceSource(Resources res, int resId){
+            mRes = res;
+            mResId = resId;
+        }
+
+        @Override
+        String getKey() {
+            return "res:"+mResId;
+        }
+
+        /**
+         * Ids may be reassigned by other builds, so the resource is keyed by
+         * name; {@link IconDiskCache} also keys by app version.
+         */
+        @Override
+        String getDiskKey() {
+            if (mDiskKey==null){
+                String name;
+                try {
+                    name = mRes.getResourceName(mResId);
+                }catch (Resources.NotFoundException e){
+                    name = Integer.toString(mResId);
+                }
+                mDiskKey = "res:"+name;
+            }
+            return mDiskKey;
+        }
+
+        @Override
+        Bitmap decode(int reqWidth, int reqHeight, BitmapPool pool) {
+            return CommonUtil.scaleToRequestDimension(mRes, mResId, reqWidth, reqHeight,
+                    getDecodeConfig(), pool);
+        }
+    }
+}
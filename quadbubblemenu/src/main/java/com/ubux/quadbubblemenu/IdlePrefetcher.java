@@ -0,0 +1,160 @@
+package com.ubux.quadbubblemenu;
+
+import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.Choreographer;
+
+
+/**
+ * Runs prefetch work of a {@link QuadBubbleMenu} in small slices while the
+ * UI thread is idle, at most one slice per frame: after a slice, the idle
+ * handler is removed until the next frame adds it back. Each slice does
+ * units of work until the budget is spent, so a unit longer than the budget
+ * still runs alone. Before api 16, frames are posted by the frame delay of
+ * animators. Must be used on the UI thread only.
+ */
+final class IdlePrefetcher implements MessageQueue.IdleHandler {
+
+    interface Callback {
+        /**
+         * Do one unit of prefetch work.
+         * @return false if there was nothing left to do
+         */
+        boolean prefetchNext();
+    }
+
+    static final long DEFAULT_BUDGET_NANOS = 2000000;
+
+    private final Callback mCallback;
+    private long mBudgetNanos = DEFAULT_BUDGET_NANOS;
+    private boolean mIsScheduled = false;
+    private long mLastSliceNanos = 0;
+
+    /**
+     * Created on first use: the frame callback from api 16, or the runnable
+     * and its handler before.
+     */
+    private FrameCallback mFrameCallback = null;
+    private Runnable mFrameRunnable = null;
+    private Handler mHandler = null;
+
+    IdlePrefetcher(Callback callback){
+        mCallback = callback;
+    }
+
+    void setBudgetNanos(long budgetNanos){
+        mBudgetNanos = budgetNanos;
+    }
+    long getBudgetNanos(){
+        return mBudgetNanos;
+    }
+
+    /**
+     * @return fraction of the budget consumed by the latest slice which did
+     * any work, greater than 1 if a unit overran it
+     */
+    float getLastBudgetUsage(){
+        return (float)mLastSliceNanos/mBudgetNanos;
+    }
+
+    /**
+     * Run slices from the next idle time on, until there is nothing left to
+     * do or {@link #cancel()}.
+     */
+    void schedule(){
+        if (mIsScheduled){
+            return;
+        }
+        mIsScheduled = true;
+        Looper.myQueue().addIdleHandler(this);
+    }
+
+    void cancel(){
+        if (!mIsScheduled){
+            return;
+        }
+        mIsScheduled = false;
+        Looper.myQueue().removeIdleHandler(this);
+        removeFrame();
+    }
+
+    @Override
+    public boolean queueIdle() {
+        if (runSlice()){
+            // Idle again by the next frame, which also wakes the queue up.
+            postFrame();
+        }else {
+            mIsScheduled = false;
+        }
+        return false;
+    }
+
+    private void onFrame(){
+        if (mIsScheduled){
+            Looper.myQueue().addIdleHandler(this);
+        }
+    }
+
+    /**
+     * @return true if there may be more to do
+     */
+    boolean runSlice(){
+        final long start = System.nanoTime();
+        long elapsed = 0;
+        boolean hasMore = true;
+        int unitCount = 0;
+        while (elapsed<mBudgetNanos){
+            if (!mCallback.prefetchNext()){
+                hasMore = false;
+                break;
+            }
+            ++unitCount;
+            elapsed = System.nanoTime()-start;
+        }
+        if (unitCount>0){
+            mLastSliceNanos = elapsed;
+        }
+        return hasMore;
+    }
+
+    private void postFrame(){
+        if (Build.VERSION.SDK_INT>=16){
+            if (mFrameCallback==null){
+                mFrameCallback = new FrameCallback();
+            }
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+            return;
+        }
+        if (mFrameRunnable==null){
+            mHandler = new Handler(Looper.getMainLooper());
+            mFrameRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    onFrame();
+                }
+            };
+        }
+        mHandler.postDelayed(mFrameRunnable, ValueAnimator.getFrameDelay());
+    }
+
+    private void removeFrame(){
+        if (mFrameCallback!=null){
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+        }
+        if (mFrameRunnable!=null){
+            mHandler.removeCallbacks(mFrameRunnable);
+        }
+    }
+
+    @TargetApi(16)
+    private final class FrameCallback implements Choreographer.FrameCallback {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            onFrame();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.ubux.quadbubblemenu;
+
+import android.graphics.Rect;
+import android.view.View;
+
+
+/**
+ * Tracks the regions repainted by each frame of an expand/collapse animation:
+ * for every item bubble which moved, its bounds in the previous frame and in
+ * the current one. Must be used on the UI thread only.
+ */
+final class InvalidationTracker {
+
+    /**
+     * (left, top, right, bottom) of each item bubble in the previous frame,
+     * and in the frame being tracked.
+     */
+    private int[] mLastBounds = new int[0];
+    private int mLastCount = 0;
+    private int[] mBounds = new int[0];
+    private int mCount = 0;
+
+    /**
+     * (left, top, right, bottom) of each region repainted in the latest frame.
+     */
+    private int[] mDirty = new int[0];
+    private int mDirtyCount = 0;
+    private final Rect mDirtyBounds = new Rect();
+    private long mFramePixels = 0;
+    private final Rect mTmpRect = new Rect();
+
+    /**
+     * @return array to fill with the bounds of item bubbles in the frame
+     * about to be tracked, 4 values for each, valid until {@link #start()}
+     * or {@link #onFrame(View)}
+     */
+    int[] obtainItemBounds(int itemCount){
+        if (mBounds.length<4*itemCount){
+            mBounds = new int[4*itemCount];
+        }
+        mCount = itemCount;
+        return mBounds;
+    }
+
+    /**
+     * Start tracking from the item bounds just obtained, where items are when
+     * the animation starts.
+     */
+    void start(){
+        swapBounds();
+        mDirtyCount = 0;
+        mDirtyBounds.setEmpty();
+        mFramePixels = 0;
+    }
+
+    /**
+     * Find the regions to repaint from the previous frame to the item bounds
+     * just obtained. Items which did not move are skipped.
+     * @param host view to invalidate each region of, or null to only count
+     *             them, e.g. when item views invalidate themselves
+     */
+    void onFrame(View host){
+        final int count = Math.max(mCount, mLastCount);
+        if (mDirty.length<4*count){
+            mDirty = new int[4*count];
+        }
+        mDirtyCount = 0;
+        mDirtyBounds.setEmpty();
+        mFramePixels = 0;
+        for (int i=0; i<count; ++i){
+            final Rect dirty = mTmpRect;
+            dirty.setEmpty();
+            final boolean isLast = i<mLastCount;
+            final boolean isCurrent = i<mCount;
+            if (isLast && isCurrent && mLastBounds[4*i]==mBounds[4*i]
+                    && mLastBounds[4*i+1]==mBounds[4*i+1] && mLastBounds[4*i+2]==mBounds[4*i+2]
+                    && mLastBounds[4*i+3]==mBounds[4*i+3]){
+                continue;
+            }
+            if (isLast){
+                dirty.union(mLastBounds[4*i], mLastBounds[4*i+1], mLastBounds[4*i+2],
+                        mLastBounds[4*i+3]);
+            }
+            if (isCurrent){
+                dirty.union(mBounds[4*i], mBounds[4*i+1], mBounds[4*i+2], mBounds[4*i+3]);
+            }
+            if (dirty.isEmpty()){
+                continue;
+            }
+            final int offset = 4*mDirtyCount++;
+            mDirty[offset] = dirty.left;
+            mDirty[offset+1] = dirty.top;
+            mDirty[offset+2] = dirty.right;
+            mDirty[offset+3] = dirty.bottom;
+            mDirtyBounds.union(dirty);
+            mFramePixels += (long)dirty.width()*dirty.height();
+            if (host!=null){
+                host.invalidate(dirty);
+            }
+        }
+        swapBounds();
+    }
+
+    private void swapBounds(){
+        int[] bounds = mLastBounds;
+        mLastBounds = mBounds;
+        mBounds = bounds;
+        mLastCount = mCount;
+        mCount = 0;
+    }
+
+    /**
+     * @return count of regions repainted in the latest frame
+     */
+    int getFrameDirtyCount(){
+        return mDirtyCount;
+    }
+
+    void getFrameDirty(int index, Rect outDirty){
+        outDirty.set(mDirty[4*index], mDirty[4*index+1], mDirty[4*index+2],
+                mDirty[4*index+3]);
+    }
+
+    /**
+     * @return union of the regions repainted in the latest frame
+     */
+    Rect getFrameDirtyBounds(){
+        return mDirtyBounds;
+    }
+
+    /**
+     * @return sum of the areas of the regions repainted in the latest frame
+     */
+    long getFramePixels(){
+        return mFramePixels;
+    }
+}
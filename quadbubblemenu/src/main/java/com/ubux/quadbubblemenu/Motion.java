@@ -0,0 +1,167 @@
+package com.ubux.quadbubblemenu;
+
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.Interpolator;
+
+import com.ubux.quadbubblemenu.util.CommonUtil;
+
+
+/**
+ * How items of a {@link QuadBubbleMenu} move between collapsed (progress 0)
+ * and expanded (progress 1). The menu keeps the progress and velocity of all
+ * items in primitive arrays and steps each item once per frame, so a motion
+ * must not keep per-item state, and may be shared by menus.
+ */
+public abstract class Motion {
+
+    /**
+     * Advance one item by a frame.
+     * @param progress progress of each item, updated in place
+     * @param velocity progress per second of each item, updated in place
+     * @param index index of the item in both arrays
+     * @param from progress of the item when it started moving toward the target
+     * @param target progress to move to, 0 or 1
+     * @param elapsed seconds since the item started moving toward the target
+     * @param delta seconds since the previous frame, no more than elapsed
+     * @return true while the item is still moving. Once false, its progress
+     * must be the target.
+     */
+    public abstract boolean step(float[] progress, float[] velocity, int index,
+                                 float from, float target, float elapsed, float delta);
+
+    static boolean settle(float[] progress, float[] velocity, int index, float target){
+        progress[index] = target;
+        velocity[index] = 0;
+        return false;
+    }
+
+    /**
+     * Moves along an interpolator within a fixed duration, shortened in
+     * proportion when the item starts part of the way.
+     */
+    public static final class Tween extends Motion {
+
+        private final float mDuration;
+        private final Interpolator mInterpolator;
+
+        public Tween(long durationMillis){
+            this(durationMillis, new AccelerateDecelerateInterpolator());
+        }
+
+        public Tween(long durationMillis, Interpolator interpolator){
+            if (durationMillis<0){
+                throw new RuntimeException("Illegal durationMillis!");
+            }
+            mDuration = durationMillis/1000f;
+            mInterpolator = CommonUtil.checkNotNull(interpolator);
+        }
+
+        @Override
+        public boolean step(float[] progress, float[] velocity, int index,
+                            float from, float target, float elapsed, float delta) {
+            final float duration = mDuration*Math.abs(target-from);
+            if (elapsed>=duration){
+                return settle(progress, velocity, index, target);
+            }
+            final float last = progress[index];
+            progress[index] = from+(target-from)*mInterpolator.getInterpolation(elapsed/duration);
+            if (delta>0){
+                velocity[index] = (progress[index]-last)/delta;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A damped spring pulling the item to the target. It keeps the item's
+     * velocity, so a reversal or a fling carries on smoothly, and bounces
+     * past the target when under-damped.
+     */
+    public static final class Spring extends Motion {
+
+        /**
+         * Longest step of integration, which keeps stiff springs stable
+         * however long a frame takes.
+         */
+        private static final float MAX_STEP = 1/240f;
+        private static final float REST_DISTANCE = 0.001f;
+        private static final float REST_VELOCITY = 0.01f;
+
+        private final float mStiffness;
+        private final float mDamping;
+
+        /**
+         * @param stiffness square of the angular frequency, e.g. 400 for a
+         *                  soft spring and 1500 for a snappy one
+         * @param dampingRatio 1 for no bounce, less than 1 to bounce
+         */
+        public Spring(float stiffness, float dampingRatio){
+            if (stiffness<=0 || dampingRatio<=0){
+                throw new RuntimeException("Illegal stiffness or dampingRatio!");
+            }
+            mStiffness = stiffness;
+            mDamping = 2*dampingRatio*(float)Math.sqrt(stiffness);
+        }
+
+        @Override
+        public boolean step(float[] progress, float[] velocity, int index,
+                            float from, float target, float elapsed, float delta) {
+            float x = progress[index]-target;
+            float v = velocity[index];
+            for (float remaining=delta; remaining>0; remaining-=MAX_STEP){
+                final float dt = Math.min(remaining, MAX_STEP);
+                v += (-mStiffness*x-mDamping*v)*dt;
+                x += v*dt;
+            }
+            if (Math.abs(x)<REST_DISTANCE && Math.abs(v)<REST_VELOCITY){
+                return settle(progress, velocity, index, target);
+            }
+            progress[index] = target+x;
+            velocity[index] = v;
+            return true;
+        }
+    }
+
+    /**
+     * Glides toward the target, the initial velocity (e.g. of a fling)
+     * decaying by friction down to a minimum speed which ensures it arrives.
+     */
+    public static final class Decay extends Motion {
+
+        private final float mFriction;
+        private final float mMinVelocity;
+
+        /**
+         * @param friction rate of decay per second, e.g. 4
+         * @param minVelocity progress per second which the item never slows
+         *                    down under, e.g. 2
+         */
+        public Decay(float friction, float minVelocity){
+            if (friction<0 || minVelocity<=0){
+                throw new RuntimeException("Illegal friction or minVelocity!");
+            }
+            mFriction = friction;
+            mMinVelocity = minVelocity;
+        }
+
+        @Override
+        public boolean step(float[] progress, float[] velocity, int index,
+                            float from, float target, float elapsed, float delta) {
+            final float direction = Math.signum(target-progress[index]);
+            if (direction==0){
+                return settle(progress, velocity, index, target);
+            }
+            float v = velocity[index]*(float)Math.exp(-mFriction*delta);
+            if (v*direction<mMinVelocity){
+                v = direction*mMinVelocity;
+            }
+            final float p = progress[index]+v*delta;
+            if ((target-p)*direction<=0){
+                return settle(progress, velocity, index, target);
+            }
+            progress[index] = p;
+            velocity[index] = v;
+            return true;
+        }
+    }
+}
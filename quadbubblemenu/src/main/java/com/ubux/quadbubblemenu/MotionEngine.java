@@ -0,0 +1,260 @@
+package com.ubux.quadbubblemenu;
+
+import android.animation.ValueAnimator;
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.Arrays;
+
+
+/**
+ * Moves all items of a {@link QuadBubbleMenu} by a {@link Motion}, from one
+ * Choreographer frame callback which steps every item in primitive arrays.
+ * Starting from rest, each item starts one stagger after the previous one.
+ * Items may also be held at a progress, e.g. following a drag, and released
+ * by the next motion.
+ * Time is taken from frames only. Each run starts one frame before its first
+ * frame, so that the first frame moves items already.
+ * Before api 16, frames are posted by the frame delay of animators and timed
+ * by {@link System#nanoTime()}, the clock of Choreographer.
+ * Must be used on the UI thread only.
+ */
+final class MotionEngine {
+
+    interface Callback {
+        void onMotionStart();
+
+        /**
+         * Items have moved, see {@link #getProgress()}.
+         */
+        void onMotionFrame();
+
+        void onMotionEnd();
+    }
+
+    /**
+     * Longest frame stepped at once, so that a stalled frame does not throw
+     * items too far.
+     */
+    private static final long MAX_FRAME_NANOS = 100000000;
+    /**
+     * Assumed length of the frame before the first frame of a run from rest.
+     */
+    private static final long FIRST_FRAME_NANOS = 1000000000/60;
+
+    private final Callback mCallback;
+    private long mStaggerMillis = 0;
+
+    /**
+     * Progress, velocity and progress at the start of the current run, of
+     * each item. Grown only when items are added.
+     */
+    private float[] mProgress = new float[0];
+    private float[] mVelocity = new float[0];
+    private float[] mFrom = new float[0];
+    private int mItemCount = 0;
+    private float mTarget = 0;
+
+    private boolean mIsRunning = false;
+    private boolean mIsHeld = false;
+    private Motion mRunMotion;
+    private long mRunStaggerMillis;
+    /**
+     * Frame time when the current run started, or -1 until its first frame
+     * from rest.
+     */
+    private long mStartNanos = -1;
+    private long mLastFrameNanos;
+
+    /**
+     * Created on first use: the frame callback from api 16, or the runnable
+     * and its handler before.
+     */
+    private FrameCallback mFrameCallback = null;
+    private Runnable mFrameRunnable = null;
+    private Handler mHandler = null;
+
+    MotionEngine(Callback callback){
+        mCallback = callback;
+    }
+
+    void setStaggerMillis(long staggerMillis){
+        mStaggerMillis = staggerMillis;
+    }
+    long getStaggerMillis(){
+        return mStaggerMillis;
+    }
+
+    /**
+     * Added items start at the target.
+     */
+    void setItemCount(int itemCount){
+        if (itemCount>mProgress.length){
+            mProgress = Arrays.copyOf(mProgress, itemCount);
+            mVelocity = Arrays.copyOf(mVelocity, itemCount);
+            mFrom = Arrays.copyOf(mFrom, itemCount);
+        }
+        for (int i=mItemCount; i<itemCount; ++i){
+            mProgress[i] = mFrom[i] = mTarget;
+            mVelocity[i] = 0;
+        }
+        mItemCount = itemCount;
+    }
+    int getItemCount(){
+        return mItemCount;
+    }
+
+    /**
+     * @return progress of each item, valid up to {@link #getItemCount()}
+     */
+    float[] getProgress(){
+        return mProgress;
+    }
+
+    /**
+     * Move all items toward the target from where they are. A running or
+     * held motion goes on without restarting, nor staggering again.
+     * @param velocity progress per second which all items start with, e.g.
+     *                 of a fling, or NaN to keep their own velocity
+     */
+    void animateTo(float target, float velocity, Motion motion){
+        mTarget = target;
+        mRunMotion = motion;
+        for (int i=0; i<mItemCount; ++i){
+            mFrom[i] = mProgress[i];
+            if (!Float.isNaN(velocity)){
+                mVelocity[i] = velocity;
+            }
+        }
+        if (mIsRunning){
+            // Restarted at the last frame, so that the next frame moves items.
+            if (mStartNanos>=0){
+                mStartNanos = mLastFrameNanos;
+            }
+            mRunStaggerMillis = 0;
+            return;
+        }
+        mStartNanos = -1;
+        mRunStaggerMillis = mIsHeld? 0: mStaggerMillis;
+        mIsRunning = true;
+        if (!mIsHeld){
+            mCallback.onMotionStart();
+            // Items take their starting positions before the first frame.
+            mCallback.onMotionFrame();
+        }
+        mIsHeld = false;
+        postFrame();
+    }
+
+    /**
+     * Hold all items at the progress until the next {@link #animateTo}. A
+     * running motion stops where it is, without ending.
+     */
+    void holdAt(float progress){
+        if (mIsRunning){
+            removeFrame();
+            mIsRunning = false;
+        }else if (!mIsHeld){
+            mCallback.onMotionStart();
+        }
+        mIsHeld = true;
+        for (int i=0; i<mItemCount; ++i){
+            mProgress[i] = mFrom[i] = progress;
+            mVelocity[i] = 0;
+        }
+        mCallback.onMotionFrame();
+    }
+
+    /**
+     * @return progress of the first item, or the target if there is none
+     */
+    float getLeadingProgress(){
+        return mItemCount>0? mProgress[0]: mTarget;
+    }
+
+    /**
+     * Jump all items to the target and end the running or held motion, if any.
+     */
+    void end(){
+        if (!mIsRunning && !mIsHeld){
+            return;
+        }
+        mIsHeld = false;
+        removeFrame();
+        for (int i=0; i<mItemCount; ++i){
+            Motion.settle(mProgress, mVelocity, i, mTarget);
+        }
+        mCallback.onMotionFrame();
+        mIsRunning = false;
+        mCallback.onMotionEnd();
+    }
+
+    private void doFrame(long frameTimeNanos){
+        if (!mIsRunning){
+            return;
+        }
+        if (mStartNanos<0){
+            mStartNanos = mLastFrameNanos = frameTimeNanos-FIRST_FRAME_NANOS;
+        }
+        final long frameNanos = Math.min(MAX_FRAME_NANOS, frameTimeNanos-mLastFrameNanos);
+        mLastFrameNanos = frameTimeNanos;
+        boolean isMoving = false;
+        for (int i=0; i<mItemCount; ++i){
+            final long elapsedNanos = frameTimeNanos-mStartNanos-i*mRunStaggerMillis*1000000;
+            if (elapsedNanos<=0){
+                // Not started yet.
+                isMoving = true;
+                continue;
+            }
+            isMoving |= mRunMotion.step(mProgress, mVelocity, i, mFrom[i], mTarget,
+                    elapsedNanos/1e9f, Math.min(frameNanos, elapsedNanos)/1e9f);
+        }
+        mCallback.onMotionFrame();
+        if (isMoving){
+            postFrame();
+        }else {
+            mIsRunning = false;
+            mCallback.onMotionEnd();
+        }
+    }
+
+    private void postFrame(){
+        if (Build.VERSION.SDK_INT>=16){
+            if (mFrameCallback==null){
+                mFrameCallback = new FrameCallback();
+            }
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+            return;
+        }
+        if (mFrameRunnable==null){
+            mHandler = new Handler(Looper.getMainLooper());
+            mFrameRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    doFrame(System.nanoTime());
+                }
+            };
+        }
+        mHandler.postDelayed(mFrameRunnable, ValueAnimator.getFrameDelay());
+    }
+
+    private void removeFrame(){
+        if (mFrameCallback!=null){
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+        }
+        if (mFrameRunnable!=null){
+            mHandler.removeCallbacks(mFrameRunnable);
+        }
+    }
+
+    @TargetApi(16)
+    private final class FrameCallback implements Choreographer.FrameCallback {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            MotionEngine.this.doFrame(frameTimeNanos);
+        }
+    }
+}
@@ -1,24 +1,38 @@
 package com.ubux.quadbubblemenu;
 
-import android.animation.Animator;
-import android.animation.AnimatorListenerAdapter;
-import android.animation.AnimatorSet;
-import android.animation.ObjectAnimator;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Bundle;
+import android.support.v4.view.ViewCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
+import android.support.v4.widget.ExploreByTouchHelper;
 import android.util.AttributeSet;
 import android.util.DisplayMetrics;
 import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
+import android.view.VelocityTracker;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.WindowManager;
+import android.view.accessibility.AccessibilityEvent;
 import android.widget.ImageView;
 
+import com.ubux.quadbubblemenu.util.CommonUtil;
 import com.ubux.quadbubblemenu.util.UiUtil;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -26,11 +40,33 @@ public class QuadBubbleMenu extends ViewGroup {
 
     private static final String TAG = QuadBubbleMenu.class.getSimpleName();
 
+    private static final float SQRT_HALF = (float)Math.sqrt(0.5);
+
     public static final int TOP_START = 0;
     public static final int TOP_END = 1;
     public static final int BOTTOM_START = 2;
     public static final int BOTTOM_END = 3;
 
+    /**
+     * Every item is a child view.
+     */
+    public static final int RENDER_MODE_VIEWS = 0;
+    /**
+     * Items are drawn by this menu itself, which does hit-testing and
+     * accessibility for them. Only the axis view is a child view.
+     */
+    public static final int RENDER_MODE_CANVAS = 1;
+
+    /**
+     * All items are on one arc, which grows with the item count.
+     */
+    public static final int LAYOUT_MODE_SINGLE_ARC = 0;
+    /**
+     * Items fill concentric arcs from the innermost one, keeping large menus
+     * compact.
+     */
+    public static final int LAYOUT_MODE_RINGS = 1;
+
     private int mItemRadius = 0;
     private int mItemSpace = 0;
     private Drawable mCollapsingDrawable;
@@ -49,14 +85,163 @@ public class QuadBubbleMenu extends ViewGroup {
      */
     private int mMinDistanceToAxisView = 0;
 
-    private boolean mIsCollapsing = true;
+    /**
+     * Expand/collapse states. A tap while expanding or collapsing reverses the
+     * animation from where it is.
+     */
+    private static final int STATE_COLLAPSED = 0;
+    private static final int STATE_EXPANDING = 1;
+    private static final int STATE_EXPANDED = 2;
+    private static final int STATE_COLLAPSING = 3;
+    /**
+     * Items follow a drag on the axis view, laid out expanded.
+     */
+    private static final int STATE_DRAGGING = 4;
+    private int mState = STATE_COLLAPSED;
+
+    /**
+     * Added items, in the same order of item views.
+     */
+    private final List<MenuItem> mItems = new ArrayList<>();
+
+    /**
+     * Removed item views are put here to be rebound to new items.
+     */
+    private RecycledItemViewPool mRecycledItemViewPool = new RecycledItemViewPool();
+
+    /**
+     * When set, item views are created and bound only while this menu is not
+     * collapsed, instead of being built from {@link #mItems}.
+     */
+    private Adapter mAdapter = null;
+    private boolean mAdapterItemsBound = false;
+
+    /**
+     * While enabled and collapsed, adapter items are bound ahead and then
+     * stay bound, and item views' hardware layers are built, in slices of
+     * idle time, so that expanding creates nothing.
+     */
+    private boolean mIdlePrefetchEnabled = false;
+    private IdlePrefetcher mIdlePrefetcher = null;
+
+    /**
+     * Cached value of R.bool.is_rtl, refreshed when configuration changes.
+     */
+    private boolean mIsRtl = false;
+
+    /**
+     * Geometry shared by measuring, layout and animations. Recomputed only when
+     * any of its inputs changes.
+     */
+    private QuadGeometry mGeometry = null;
+
+    /**
+     * Geometry which item views were laid out with.
+     */
+    private QuadGeometry mLaidOutGeometry = null;
+
+    /**
+     * When enabled, item views are always laid out at their expanded positions
+     * and this menu always measures its expanded size. Expanding and collapsing
+     * then only change item views' translation and visibility, without any
+     * layout request.
+     */
+    private boolean mStableLayoutEnabled = false;
+
+    private int mLayoutMode = LAYOUT_MODE_SINGLE_ARC;
+
+    private int mRenderMode = RENDER_MODE_VIEWS;
+    /**
+     * Non-null only in canvas render mode.
+     */
+    private BubbleRenderer mRenderer = null;
+    private ItemAccessibilityHelper mAccessibilityHelper = null;
+    /**
+     * Index of the item pressed in canvas render mode, or -1.
+     */
+    private int mPressedItem = -1;
+    private final Rect mTmpRect = new Rect();
+
+    /**
+     * Extra distance around each item which still hits it.
+     */
+    private int mItemTouchSlop = -1;
+    /**
+     * Index of the item view receiving the current gesture, found by
+     * geometry, or -1 if the gesture goes through the default dispatch.
+     */
+    private int mItemTouchTarget = -1;
 
     private CircleImageView mAxisView = null;
 
-    private List<View> mReusedItemViews = new ArrayList<>();
+    /**
+     * The only driver of expanding and collapsing. It keeps the progress of
+     * each item, from 0 when collapsed to 1 when expanded, and moves them all
+     * toward the target from one frame callback, so a reversal goes on from
+     * where items are.
+     */
+    private MotionEngine mMotionEngine = null;
+    private Motion mMotion = new Motion.Tween(200);
+    /**
+     * Settles items when a drag on the axis view is released, from the
+     * velocity of the drag.
+     */
+    private Motion mSettleMotion = new Motion.Decay(4, 3);
+
+    private boolean mAxisDragEnabled = true;
+    /**
+     * True from a touch down on the axis view until it is dragged or released.
+     */
+    private boolean mIsAxisTouched = false;
+    private float mDragDownRawX;
+    private float mDragDownRawY;
+    private float mDragStartProgress;
+    /**
+     * Unit vector from the axis view toward items, and the drag distance
+     * along it which moves items from collapsed to expanded.
+     */
+    private float mDragDirX;
+    private float mDragDirY;
+    private float mDragRange;
+    /**
+     * Obtained on the first drag and reused until detached.
+     */
+    private VelocityTracker mVelocityTracker = null;
+    private int mTouchSlop;
+    private int mMinFlingVelocity;
+
+    /**
+     * Whether item views are moved onto hardware layers while animating,
+     * so that they are not redrawn on every frame.
+     */
+    private boolean mHardwareLayerAnimationEnabled = false;
+
+    /**
+     * Sum of item views' draw count when the latest animation started.
+     */
+    private int mAnimationStartDrawCount = 0;
+    private int mLastAnimationRedrawCount = 0;
+
+    /**
+     * Region repainted by each animation frame. Canvas render mode invalidates
+     * exactly this region; item views invalidate their own old and new bounds,
+     * whose union is measured here.
+     */
+    private final InvalidationTracker mInvalidationTracker = new InvalidationTracker();
+    /**
+     * True from the start of an animation to its last drawn frame.
+     */
+    private boolean mIsTrackingInvalidation = false;
+    /**
+     * Non-null only while the invalidation overlay is enabled.
+     */
+    private Paint mInvalidationOverlayPaint = null;
 
-    private Animator mCollapseAnim = null;
-    private Animator mExpandAnim = null;
+    /**
+     * Nothing is timed or tracked while null.
+     */
+    private MetricsListener mMetricsListener = null;
+    private AnimationFrameTracker mFrameTracker = null;
 
     public QuadBubbleMenu(Context context) {
         super(context);
@@ -75,12 +260,18 @@ public class QuadBubbleMenu extends ViewGroup {
                 a.getDrawable(R.styleable.QuadBubbleMenu_axisViewBackground);
         mQuadrantLocation =
                 a.getInt(R.styleable.QuadBubbleMenu_quadrantLocation, mQuadrantLocation);
+        mStableLayoutEnabled =
+                a.getBoolean(R.styleable.QuadBubbleMenu_stableLayout, mStableLayoutEnabled);
+        mLayoutMode = a.getInt(R.styleable.QuadBubbleMenu_layoutMode, mLayoutMode);
+        final int renderMode = a.getInt(R.styleable.QuadBubbleMenu_renderMode, mRenderMode);
         a.recycle();
         defaultInitIfNeeded();
+        setRenderMode(renderMode);
     }
 
     private void defaultInitIfNeeded(){
         Context context = getContext();
+        mIsRtl = context.getResources().getBoolean(R.bool.is_rtl);
         DisplayMetrics dm = context.getResources().getDisplayMetrics();
         if (mItemRadius==0) {
             mItemRadius = (int)TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
@@ -90,6 +281,10 @@ public class QuadBubbleMenu extends ViewGroup {
             mItemSpace = (int)TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
                     8, dm);
         }
+        if (mItemTouchSlop<0){
+            // Half of the gap, so that every tap between two items hits the nearer one.
+            mItemTouchSlop = mItemSpace/2;
+        }
         if (mMinDistanceToAxisView==0) {
             mMinDistanceToAxisView =
                     (int)TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
@@ -108,6 +303,12 @@ public class QuadBubbleMenu extends ViewGroup {
                     UiUtil.getDrawable(context, R.color.quad_bubble_menu_item_default);
         }
 
+        mMotionEngine = new MotionEngine(mMotionCallback);
+        mIdlePrefetcher = new IdlePrefetcher(mPrefetchCallback);
+        ViewConfiguration vc = ViewConfiguration.get(context);
+        mTouchSlop = vc.getScaledTouchSlop();
+        mMinFlingVelocity = vc.getScaledMinimumFlingVelocity();
+
         mAxisView = new CircleImageView(context);
         mAxisView.setLayoutParams(new LayoutParams(2*mItemRadius,
                 2*mItemRadius));
@@ -121,38 +322,108 @@ public class QuadBubbleMenu extends ViewGroup {
         mAxisView.setOnClickListener(new OnClickListener() {
             @Override
             public void onClick(View v) {
-                mIsCollapsing = !mIsCollapsing;
-                final CircleImageView civ = (CircleImageView)v;
-
-
-                if (!mIsCollapsing){
-                    civ.setImageDrawable(mExpandingDrawable);
-                    requestLayout();
-                    mExpandAnim = createExpandAnim();
-                    mExpandAnim.start();
-                }else {
-                    mCollapseAnim = createCollapseAnim(new AnimatorListenerAdapter() {
-                        @Override
-                        public void onAnimationEnd(Animator animation) {
-                            civ.setImageDrawable(mCollapsingDrawable);
-                            requestLayout();
-                        }
-                    });
-                    mCollapseAnim.start();
-                }
+                toggle(mMetricsListener!=null? System.nanoTime(): 0);
             }
         });
         addView(mAxisView);
     }
 
+    /**
+     * @param clickNanos {@link System#nanoTime()} when the axis view was
+     *                   clicked, or 0 if not tracked
+     */
+    private void toggle(long clickNanos){
+        switch (mState){
+            case STATE_COLLAPSED:
+                mState = STATE_EXPANDING;
+                prepareExpanding();
+                startFrameTrackingIfNeeded(clickNanos);
+                animateItemsTo(1);
+                break;
+            case STATE_EXPANDED:
+                mState = STATE_COLLAPSING;
+                startFrameTrackingIfNeeded(clickNanos);
+                animateItemsTo(0);
+                break;
+            case STATE_EXPANDING:
+            case STATE_COLLAPSING:
+                // Item views are still laid out expanded, so reversing needs
+                // no layout.
+                mState = mState==STATE_EXPANDING? STATE_COLLAPSING: STATE_EXPANDING;
+                startFrameTrackingIfNeeded(clickNanos);
+                animateItemsTo(mState==STATE_EXPANDING? 1: 0);
+                break;
+        }
+        invalidateVirtualItems();
+    }
+
+    /**
+     * @return true if collapsed or collapsing
+     */
+    private boolean isCollapsing(){
+        return mState==STATE_COLLAPSED || mState==STATE_COLLAPSING;
+    }
+
+    /**
+     * @return true if the items are animating toward expanded
+     */
+    boolean isExpanding(){
+        return mState==STATE_EXPANDING;
+    }
+
+    private void animateItemsTo(float target){
+        mMotionEngine.setItemCount(getItemCount());
+        mMotionEngine.animateTo(target, Float.NaN, mMotion);
+    }
+
+    /**
+     * Bind and lay out items before they move out of the axis view.
+     */
+    private void prepareExpanding(){
+        mAxisView.setImageDrawable(mExpandingDrawable);
+        bindAdapterItemsIfNeeded();
+        // Items prefetched while collapsed are hidden even without stable layout.
+        setItemVisibility(VISIBLE);
+        if (!mStableLayoutEnabled){
+            requestLayout();
+        }
+    }
+
+    /**
+     * Jump items to where they are moving to, releasing a drag if any.
+     */
+    private void endMotion(){
+        if (mState==STATE_DRAGGING){
+            releaseAxisDrag(false);
+        }
+        mMotionEngine.end();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        schedulePrefetchIfNeeded();
+    }
+
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
-        if (mCollapseAnim!=null && mCollapseAnim.isRunning()){
-            mCollapseAnim.end();
+        mIdlePrefetcher.cancel();
+        endMotion();
+        mIsAxisTouched = false;
+        if (mVelocityTracker!=null){
+            mVelocityTracker.recycle();
+            mVelocityTracker = null;
         }
-        if (mExpandAnim!=null && mExpandAnim.isRunning()){
-            mExpandAnim.end();
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        boolean isRtl = getContext().getResources().getBoolean(R.bool.is_rtl);
+        if (isRtl!=mIsRtl){
+            mIsRtl = isRtl;
+            requestLayout();
         }
     }
 
@@ -168,264 +439,1519 @@ public class QuadBubbleMenu extends ViewGroup {
         return mQuadrantLocation;
     }
 
-    private boolean isAxisUnderItems(){
-        return mQuadrantLocation == TOP_START || mQuadrantLocation == TOP_END;
+    /**
+     * Opt in to render item views through hardware layers during the
+     * expand/collapse animation. Layers are released when the animation ends.
+     * Has no effect before api 18, where item views are software-rendered.
+     */
+    public void setHardwareLayerAnimationEnabled(boolean enabled){
+        if (!enabled && mState==STATE_COLLAPSED && shouldUseHardwareLayer()){
+            // Release layers built by idle prefetch.
+            setItemLayerType(LAYER_TYPE_NONE);
+        }
+        mHardwareLayerAnimationEnabled = enabled;
+        schedulePrefetchIfNeeded();
     }
-
-    private boolean isAxisLeftOfItems(){
-        boolean isLtr = !getContext().getResources().getBoolean(R.bool.is_rtl);
-        boolean ansWhenLtr = mQuadrantLocation == TOP_END || mQuadrantLocation == BOTTOM_END;
-        return isLtr == ansWhenLtr;
+    public boolean isHardwareLayerAnimationEnabled(){
+        return mHardwareLayerAnimationEnabled;
     }
 
     /**
-     * Will be invoked after requestLayout(). However, when invoked,
-     * this view may have not been measured in time.
+     * Enable or disable stable layout. When enabled, this menu always occupies
+     * its expanded size and toggling it never requests layout, which saves
+     * relayout of its ancestors.
      */
-    private AnimatorSet createExpandAnim(){
-        measure(MeasureSpec.UNSPECIFIED, MeasureSpec.UNSPECIFIED);
-        AnimatorSet animSet = new AnimatorSet();
-        final boolean isAxisUnderItems = isAxisUnderItems();
-        final boolean isAxisLeftOfItems = isAxisLeftOfItems();
-        int childCount = getChildCount();
-        if (childCount==2) {
-            View child = getChildAt(0);
-            if (child==mAxisView){
-                child = getChildAt(1);
-            }
-            ObjectAnimator anim;
-            if (isAxisUnderItems){
-                anim = ObjectAnimator.ofFloat(child, "translationY",
-                        getMeasuredHeight()-2*mItemRadius, 0);
-            }else {
-                anim = ObjectAnimator.ofFloat(child, "translationY",
-                        2*mItemRadius-getMeasuredHeight(), 0);
-            }
-            animSet.play(anim);
-        }else if (childCount>2) {
-            AnimatorSet.Builder animBuilder = null;
-            final float W = getMeasuredWidth();
-            final double ITEM_THETA = Math.toRadians(90)/(childCount-2);
-            final double bigRadius = W-2*mItemRadius;
-            double theta = 0;
-            for (int i = 0; i < getChildCount(); ++i) {
-                View child = getChildAt(i);
-                if (child != mAxisView) {
-                    ObjectAnimator trX, trY;
-
-                    if (isAxisLeftOfItems) {
-                        trX = ObjectAnimator.ofFloat(child, "translationX",
-                                -(float) (bigRadius * Math.cos(theta)), 0);
-                    }else {
-                        trX = ObjectAnimator.ofFloat(child, "translationX",
-                                (float) (bigRadius * Math.cos(theta)), 0);
-                    }
-                    if (isAxisUnderItems) {
-                        trY = ObjectAnimator.ofFloat(child, "translationY",
-                                (float) (bigRadius * Math.sin(theta)), 0);
-                    }else {
-                        trY = ObjectAnimator.ofFloat(child, "translationY",
-                                -(float) (bigRadius * Math.sin(theta)), 0);
-                    }
-                    if (animBuilder==null){
-                        animBuilder = animSet.play(trX);
-                    }else {
-                        animBuilder.with(trX);
-                    }
-                    animBuilder.with(trY);
-                    theta += ITEM_THETA;
-                }
+    public void setStableLayoutEnabled(boolean enabled){
+        if (mStableLayoutEnabled!=enabled){
+            mStableLayoutEnabled = enabled;
+            if (!enabled){
+                setItemVisibility(VISIBLE);
             }
+            mLaidOutGeometry = null;
+            requestLayout();
         }
-        animSet.setDuration(200);
-        return animSet;
+    }
+    public boolean isStableLayoutEnabled(){
+        return mStableLayoutEnabled;
     }
 
     /**
-     * Will be invoked before collapsed.
+     * @return how many times item views were redrawn during the latest
+     * finished expand/collapse animation.
      */
-    private AnimatorSet createCollapseAnim(Animator.AnimatorListener listener){
-        AnimatorSet animSet = new AnimatorSet();
-        final boolean isAxisUnderItems = isAxisUnderItems();
-        final boolean isAxisLeftOfItems = isAxisLeftOfItems();
-        final int childCount = getChildCount();
-        if (childCount==2){
-            View child = getChildAt(0);
-            if (child==mAxisView){
-                child = getChildAt(1);
-            }
-            ObjectAnimator anim;
-            if (isAxisUnderItems){
-                anim = ObjectAnimator.ofFloat(child, "translationY",
-                        0, getMeasuredHeight()-2*mItemRadius);
-            }else {
-                anim = ObjectAnimator.ofFloat(child, "translationY",
-                        0, 2*mItemRadius-getMeasuredHeight());
-            }
-            animSet.play(anim);
-        }else if (childCount>2){
-            AnimatorSet.Builder animBuilder = null;
-            final float W = getMeasuredWidth();
-            final double ITEM_THETA = Math.toRadians(90)/(childCount-2);
-            final double bigRadius = W-2*mItemRadius;
-            double theta = 0;
-            for (int i = 0; i < getChildCount(); ++i) {
-                View child = getChildAt(i);
-                if (child!=mAxisView) {
-                    ObjectAnimator trX, trY;
-                    if (isAxisLeftOfItems) {
-                        trX = ObjectAnimator.ofFloat(child, "translationX",
-                                0, -(float) (bigRadius * Math.cos(theta)));
-                    }else {
-                        trX = ObjectAnimator.ofFloat(child, "translationX",
-                                0, (float) (bigRadius * Math.cos(theta)));
-                    }
-                    if (isAxisUnderItems) {
-                        trY = ObjectAnimator.ofFloat(child, "translationY",
-                                0, (float) (bigRadius * Math.sin(theta)));
-                    }else {
-                        trY = ObjectAnimator.ofFloat(child, "translationY",
-                                0, -(float) (bigRadius * Math.sin(theta)));
-                    }
-                    if (animBuilder==null){
-                        animBuilder = animSet.play(trX);
-                    }else {
-                        animBuilder.with(trX);
-                    }
-                    animBuilder.with(trY);
-                    theta += ITEM_THETA;
-                }
-            }
-        }
-        animSet.setDuration(200);
-        animSet.addListener(listener);
-        return animSet;
+    public int getLastAnimationRedrawCount(){
+        return mLastAnimationRedrawCount;
     }
 
-    @Override
-    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
-        int measuredWidth = 0;
-        int measuredHeight = 0;
-        final int childCount = getChildCount();
-        measureChildren(widthMeasureSpec, heightMeasureSpec);
-
-        final int itemRadius = getChildAt(0).getMeasuredWidth()/2;
+    /**
+     * @return area in pixels invalidated by the latest expand/collapse
+     * animation frame, i.e. the sum over moved item bubbles of each one's
+     * bounds in that frame and in the previous one.
+     */
+    public long getLastFrameInvalidatedPixels(){
+        return mInvalidationTracker.getFramePixels();
+    }
 
-        if (mIsCollapsing){
-            setMeasuredDimension(2*itemRadius, 2*itemRadius);
+    /**
+     * Debug only. Tint the regions invalidated by each animation frame and
+     * print their area in pixels, to check overdraw on slow devices.
+     */
+    public void setInvalidationOverlayEnabled(boolean enabled){
+        if (enabled==(mInvalidationOverlayPaint!=null)){
             return;
         }
-
-        // Visibility of 'GONE' is considered to be impossible.
-        if (childCount==1){
-            measuredWidth = measuredHeight = 2*itemRadius;
-        }else if (childCount == 2){
-            measuredWidth = 2*itemRadius;
-            measuredHeight = 4 * itemRadius + mMinDistanceToAxisView;
+        if (enabled){
+            mInvalidationOverlayPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            mInvalidationOverlayPaint.setTextSize(TypedValue.applyDimension(
+                    TypedValue.COMPLEX_UNIT_SP, 12, getResources().getDisplayMetrics()));
         }else {
-            float itemCenterDist = 2*itemRadius+mItemSpace;
-            // Radians angle of two adjacent fan shapes.
-            double theta = Math.toRadians(90)/(childCount-2);
-            float tmpEdgeSize = (float)(itemCenterDist/2/Math.sin(theta/2)+2*itemRadius);
-            float minEdgeSize = 4*itemRadius+mMinDistanceToAxisView;
+            mInvalidationOverlayPaint = null;
+        }
+        invalidate();
+    }
+    public boolean isInvalidationOverlayEnabled(){
+        return mInvalidationOverlayPaint!=null;
+    }
 
-            measuredWidth = measuredHeight =
-                    Float.compare(tmpEdgeSize, minEdgeSize)>0?(int)tmpEdgeSize:(int)minEdgeSize;
+    /**
+     * Report how long this menu takes to measure, lay out, bind items and
+     * animate, e.g. to ship them to telemetry. Animation frames are tracked
+     * from api 16.
+     * @param listener null to stop reporting, which also stops all timing
+     */
+    public void setMetricsListener(MetricsListener listener){
+        if (listener==null && mFrameTracker!=null){
+            mFrameTracker.stop();
         }
-        setMeasuredDimension(measuredWidth, measuredHeight);
+        mMetricsListener = listener;
+    }
+    public MetricsListener getMetricsListener(){
+        return mMetricsListener;
     }
 
-    @SuppressWarnings("ResourceType")
-    @Override
-    protected void onLayout(boolean changed, int l, int t, int r, int b) {
-        if (changed){
-            final int W = r-l;
-            final int H = b-t;
-            final int itemRadius = getChildAt(0).getMeasuredWidth()/2;
-            final boolean isAxisUnderItems = isAxisUnderItems();
-            final boolean isAxisLeftOfItems = isAxisLeftOfItems();
-            mReusedItemViews.clear();
-            for (int i=0; i<getChildCount(); ++i){
-                View view = getChildAt(i);
-                if (view != mAxisView){
-                    mReusedItemViews.add(view);
-                }
-            }
+    /**
+     * Set how items move when expanding and collapsing. Defaults to a 200ms
+     * {@link Motion.Tween}. A {@link Motion.Spring} carries the velocity of
+     * items across reversals.
+     */
+    public void setMotion(Motion motion){
+        mMotion = CommonUtil.checkNotNull(motion);
+    }
+    public Motion getMotion(){
+        return mMotion;
+    }
 
-            if (!mIsCollapsing) {
-                final int realChildCount = mReusedItemViews.size();
-                if (realChildCount == 1) {
-                    View topV = mReusedItemViews.get(0);
-                    int top = isAxisUnderItems? 0: 2*itemRadius+mMinDistanceToAxisView;
-                    topV.layout(0, top, topV.getMeasuredWidth(), top+topV.getMeasuredHeight());
-                } else if (realChildCount > 1) {
-                    final double theta = Math.toRadians(90) / (realChildCount - 1);
-                    final int bigRadius = W - 2 * itemRadius;
-                    View child;
-                    for (int i = 0; i < realChildCount; ++i) {
-                        child = mReusedItemViews.get(i);
-                        final int nCos = (int)(bigRadius * Math.cos(theta * i));
-                        final int nSin = (int)(bigRadius * Math.sin(theta * i));
-                        // (cx, cy) is the coordinates of item view's center.
-                        // And (0, 0) is mapped to (l, b) for real.
-                        int cx = (isAxisLeftOfItems? nCos: bigRadius-nCos)+itemRadius;
-                        int cy = (isAxisUnderItems? bigRadius-nSin: nSin) + itemRadius;
-
-                        child.layout(cx - itemRadius, cy - itemRadius,
-                                cx + itemRadius, cy + itemRadius);
-                    }
-                }
-            }
+    /**
+     * Set how items settle when a drag on the axis view is released. They
+     * start with the velocity of the drag. Defaults to a {@link Motion.Decay}.
+     */
+    public void setSettleMotion(Motion motion){
+        mSettleMotion = CommonUtil.checkNotNull(motion);
+    }
+    public Motion getSettleMotion(){
+        return mSettleMotion;
+    }
+
+    /**
+     * Enable or disable dragging the axis view toward items to expand, and
+     * back to collapse. Items follow the drag, and settle to the nearer
+     * state, or in the direction of a fling, when released. Enabled by default.
+     */
+    public void setAxisDragEnabled(boolean enabled){
+        mAxisDragEnabled = enabled;
+    }
+    public boolean isAxisDragEnabled(){
+        return mAxisDragEnabled;
+    }
 
-            int axisL = isAxisLeftOfItems? 0: W-2*itemRadius;
-            int axisT = isAxisUnderItems? H-2*itemRadius: 0;
-            mAxisView.layout(axisL, axisT, axisL+mAxisView.getMeasuredWidth(),
-                    axisT+mAxisView.getMeasuredHeight());
+    /**
+     * Set the delay between starts of adjacent items, when they start moving
+     * from rest. Defaults to 0.
+     */
+    public void setItemStaggerMillis(long staggerMillis){
+        if (staggerMillis<0){
+            throw new RuntimeException("Illegal staggerMillis!");
         }
+        mMotionEngine.setStaggerMillis(staggerMillis);
+    }
+    public long getItemStaggerMillis(){
+        return mMotionEngine.getStaggerMillis();
     }
 
-    public void addItem(MenuItem item){
-        CircleImageView view = new CircleImageView(getContext());
-        view.setLayoutParams(new LayoutParams(2*mItemRadius,
-                2*mItemRadius));
-        if (item.getIcon()!=null) {
-            view.setImageDrawable(item.getIcon());
-        }else {
-            view.setImageDrawable(new ColorDrawable(
-                    UiUtil.getColor(getContext(), R.color.quad_bubble_menu_item_default)));
+    /**
+     * Enable or disable idle prefetch. When enabled, a collapsed menu binds
+     * adapter items one by one whenever the UI thread is idle, and keeps them
+     * bound instead of releasing them. With hardware layer animation enabled,
+     * it also builds item views' layers ahead. The first expand then neither
+     * creates item views nor decodes icons.
+     */
+    public void setIdlePrefetchEnabled(boolean enabled){
+        if (mIdlePrefetchEnabled==enabled){
+            return;
+        }
+        mIdlePrefetchEnabled = enabled;
+        if (enabled){
+            schedulePrefetchIfNeeded();
+            return;
+        }
+        mIdlePrefetcher.cancel();
+        if (mState==STATE_COLLAPSED){
+            // Release what has been prefetched, as if never enabled.
+            unbindAdapterItems();
+            if (shouldUseHardwareLayer()){
+                setItemLayerType(LAYER_TYPE_NONE);
+            }
         }
-        view.setContentDescription(item.getName());
-        view.setOnClickListener(item.getOnClickListener());
-        addView(view, getChildCount()-1);
+    }
+    public boolean isIdlePrefetchEnabled(){
+        return mIdlePrefetchEnabled;
     }
 
-    public static class MenuItem{
-        private String mName;
-        private Drawable mIcon;
-        private OnClickListener mOnClickListener;
+    /**
+     * Set the time idle prefetch may take in each frame. Defaults to 2ms.
+     * An item which takes longer is still prefetched alone in its frame.
+     */
+    public void setPrefetchBudgetNanos(long budgetNanos){
+        if (budgetNanos<=0){
+            throw new RuntimeException("Illegal budgetNanos!");
+        }
+        mIdlePrefetcher.setBudgetNanos(budgetNanos);
+    }
+    public long getPrefetchBudgetNanos(){
+        return mIdlePrefetcher.getBudgetNanos();
+    }
 
-        public MenuItem(){}
-        public MenuItem(String name, Drawable icon){
-            this(name, icon, null);
+    /**
+     * @return fraction of the prefetch budget consumed in the latest frame
+     * which prefetched anything, greater than 1 if an item overran it, or 0
+     * if nothing has been prefetched.
+     */
+    public float getLastPrefetchBudgetUsage(){
+        return mIdlePrefetcher.getLastBudgetUsage();
+    }
+
+    /**
+     * @param layoutMode {@link #LAYOUT_MODE_SINGLE_ARC} or {@link #LAYOUT_MODE_RINGS}
+     */
+    public void setLayoutMode(int layoutMode){
+        if (layoutMode!=LAYOUT_MODE_SINGLE_ARC && layoutMode!=LAYOUT_MODE_RINGS){
+            throw new RuntimeException("Illegal layoutMode!");
         }
-        public MenuItem(String name, Drawable icon, OnClickListener listener){
-            mName = name;
-            mIcon = icon;
-            mOnClickListener = listener;
+        if (mLayoutMode!=layoutMode){
+            mLayoutMode = layoutMode;
+            requestLayout();
         }
+    }
+    public int getLayoutMode(){
+        return mLayoutMode;
+    }
 
-        public void setName(String name){
-            mName = name;
+    /**
+     * Switch between item views and items drawn by this menu. Added items are
+     * kept. Canvas render mode cuts the view tree to one child however many
+     * items there are, and does not support an {@link Adapter}.
+     * @param renderMode {@link #RENDER_MODE_VIEWS} or {@link #RENDER_MODE_CANVAS}
+     */
+    public void setRenderMode(int renderMode){
+        if (renderMode!=RENDER_MODE_VIEWS && renderMode!=RENDER_MODE_CANVAS){
+            throw new RuntimeException("Illegal renderMode!");
         }
-        public String getName(){
-            return mName;
+        if (renderMode==mRenderMode){
+            return;
         }
-        public void setIcon(Drawable icon){
-            mIcon = icon;
+        if (renderMode==RENDER_MODE_CANVAS){
+            checkNoAdapter();
         }
-        public Drawable getIcon(){
-            return mIcon;
+        endMotion();
+        final List<MenuItem> items = new ArrayList<>(mItems);
+        setItems(Collections.<MenuItem>emptyList());
+        mLaidOutGeometry = null;
+
+        mRenderMode = renderMode;
+        if (renderMode==RENDER_MODE_CANVAS){
+            mRenderer = new BubbleRenderer(this, mItemRadius, mInvalidationTracker,
+                    mMotionEngine);
+            mAccessibilityHelper = new ItemAccessibilityHelper(this);
+            ViewCompat.setAccessibilityDelegate(this, mAccessibilityHelper);
+            setWillNotDraw(false);
+        }else {
+            mRenderer = null;
+            mAccessibilityHelper = null;
+            mPressedItem = -1;
+            ViewCompat.setAccessibilityDelegate(this, null);
+            setWillNotDraw(true);
+        }
+        setItems(items);
+    }
+    public int getRenderMode(){
+        return mRenderMode;
+    }
+
+    /**
+     * Set the extra distance around each expanded item which still hits it.
+     * Defaults to half of the item space.
+     */
+    public void setItemTouchSlop(int slop){
+        mItemTouchSlop = Math.max(0, slop);
+    }
+    public int getItemTouchSlop(){
+        return mItemTouchSlop;
+    }
+
+    View getAxisView(){
+        return mAxisView;
+    }
+
+    public int getItemRadius(){
+        return mItemRadius;
+    }
+    public int getItemSpace(){
+        return mItemSpace;
+    }
+    public int getMinDistanceToAxisView(){
+        return mMinDistanceToAxisView;
+    }
+
+    /**
+     * @return true if layout direction is right to left, which mirrors the
+     * start and end of quadrant locations
+     */
+    public boolean isRtl(){
+        return mIsRtl;
+    }
+
+    private static boolean isAxisUnderItems(int quadrantLocation){
+        return quadrantLocation == TOP_START || quadrantLocation == TOP_END;
+    }
+
+    private static boolean isAxisLeftOfItems(int quadrantLocation, boolean isRtl){
+        boolean isLtr = !isRtl;
+        boolean ansWhenLtr = quadrantLocation == TOP_END || quadrantLocation == BOTTOM_END;
+        return isLtr == ansWhenLtr;
+    }
+
+    /**
+     * @return count of item views, or the adapter's item count if they are
+     * not bound yet.
+     */
+    private int getItemCount(){
+        if (mAdapter!=null && !mAdapterItemsBound){
+            return mAdapter.getItemCount();
+        }
+        if (mRenderer!=null){
+            return mItems.size();
+        }
+        return getChildCount()-1;
+    }
+
+    /**
+     * When any input changes, the geometry is taken from the cache shared by
+     * all menus and layout snapshots.
+     */
+    private QuadGeometry getGeometry(){
+        final int itemCount = getItemCount();
+        final boolean isAxisUnderItems = isAxisUnderItems(mQuadrantLocation);
+        final boolean isAxisLeftOfItems = isAxisLeftOfItems(mQuadrantLocation, mIsRtl);
+        final boolean isMultiRing = mLayoutMode==LAYOUT_MODE_RINGS;
+        if (mGeometry==null || !mGeometry.matches(itemCount, mItemRadius, mItemSpace,
+                mMinDistanceToAxisView, isAxisUnderItems, isAxisLeftOfItems, isMultiRing)){
+            mGeometry = QuadGeometryCache.obtain(itemCount, mItemRadius, mItemSpace,
+                    mMinDistanceToAxisView, isAxisUnderItems, isAxisLeftOfItems, isMultiRing);
+        }
+        return mGeometry;
+    }
+
+    /**
+     * Apply a snapshot computed ahead of time, e.g. on a background thread
+     * along with items. It is used as long as it matches the items and
+     * dimensions of this menu; otherwise this menu takes its own.
+     */
+    public void setLayoutSnapshot(LayoutSnapshot snapshot){
+        mGeometry = CommonUtil.checkNotNull(snapshot).mGeometry;
+        requestLayout();
+    }
+
+    /**
+     * Move items from the axis view toward their expanded centers by their
+     * progress. Offsets are taken from the geometry which item views are or
+     * will be laid out with.
+     */
+    private void applyItemProgress(){
+        if (mRenderer!=null){
+            mRenderer.onItemsMoved();
+            return;
+        }
+        final float[] progress = mMotionEngine.getProgress();
+        final QuadGeometry geometry = getGeometry();
+        final float[] offsets = geometry.collapsedOffsets;
+        final int count = Math.min(geometry.itemCount, mMotionEngine.getItemCount());
+        int index = 0;
+        for (int i = 0; i < getChildCount() && index < count; ++i) {
+            View child = getChildAt(i);
+            if (child!=mAxisView) {
+                final float remaining = 1-progress[index];
+                child.setTranslationX(offsets[2*index]*remaining);
+                child.setTranslationY(offsets[2*index+1]*remaining);
+                ++index;
+            }
+        }
+    }
+
+    private void onCollapsed(){
+        mAxisView.setImageDrawable(mCollapsingDrawable);
+        if (!mIdlePrefetchEnabled){
+            unbindAdapterItems();
+        }
+        if (mStableLayoutEnabled){
+            setItemVisibility(INVISIBLE);
+        }else {
+            requestLayout();
+        }
+        invalidateVirtualItems();
+        schedulePrefetchIfNeeded();
+    }
+
+    private void schedulePrefetchIfNeeded(){
+        if (mIdlePrefetchEnabled && mState==STATE_COLLAPSED && getWindowToken()!=null){
+            mIdlePrefetcher.schedule();
+        }
+    }
+
+    /**
+     * Binds the next adapter item, or else builds the next item view's
+     * hardware layer, as long as this menu stays collapsed and attached.
+     */
+    private final IdlePrefetcher.Callback mPrefetchCallback = new IdlePrefetcher.Callback() {
+        @Override
+        public boolean prefetchNext() {
+            if (!mIdlePrefetchEnabled || mState!=STATE_COLLAPSED || getWindowToken()==null){
+                return false;
+            }
+            return prefetchNextAdapterItem() || buildNextItemLayer();
+        }
+    };
+
+    private boolean prefetchNextAdapterItem(){
+        if (mAdapter==null || mAdapterItemsBound){
+            return false;
+        }
+        final int position = getChildCount()-1;
+        final int itemCount = mAdapter.getItemCount();
+        if (position<itemCount){
+            View view = bindAdapterItemInLayout(position);
+            // Hidden under the axis view until expanding.
+            final float[] offsets = getGeometry().collapsedOffsets;
+            view.setTranslationX(offsets[2*position]);
+            view.setTranslationY(offsets[2*position+1]);
+            view.setVisibility(INVISIBLE);
+        }
+        mAdapterItemsBound = position+1>=itemCount;
+        return position<itemCount;
+    }
+
+    private boolean buildNextItemLayer(){
+        if (!shouldUseHardwareLayer()){
+            return false;
+        }
+        int index = 0;
+        for (int i=0; i<getChildCount(); ++i){
+            View child = getChildAt(i);
+            if (child==mAxisView){
+                continue;
+            }
+            if (child.getLayerType()!=LAYER_TYPE_HARDWARE){
+                if (child.getWidth()==0){
+                    // Never laid out, as items are not while collapsed
+                    // without stable layout. Hidden under the axis view
+                    // until expanding.
+                    final int spec = MeasureSpec.makeMeasureSpec(2*mItemRadius,
+                            MeasureSpec.EXACTLY);
+                    child.measure(spec, spec);
+                    final QuadGeometry geometry = getGeometry();
+                    layoutItemView(child, index, geometry);
+                    child.setTranslationX(geometry.collapsedOffsets[2*index]);
+                    child.setTranslationY(geometry.collapsedOffsets[2*index+1]);
+                    child.setVisibility(INVISIBLE);
+                }
+                child.setLayerType(LAYER_TYPE_HARDWARE, null);
+                child.buildLayer();
+                return true;
+            }
+            ++index;
+        }
+        return false;
+    }
+
+    private void setItemVisibility(int visibility){
+        for (int i=0; i<getChildCount(); ++i){
+            View child = getChildAt(i);
+            if (child!=mAxisView){
+                child.setVisibility(visibility);
+            }
+        }
+    }
+
+    private int sumItemDrawCount(){
+        int sum = 0;
+        for (int i=0; i<getChildCount(); ++i){
+            View child = getChildAt(i);
+            if (child!=mAxisView){
+                sum += ((CircleImageView)child).getDrawCount();
+            }
+        }
+        return sum;
+    }
+
+    private boolean shouldUseHardwareLayer(){
+        return mHardwareLayerAnimationEnabled && Build.VERSION.SDK_INT >= 18;
+    }
+
+    /**
+     * Item views which have the layer type already, e.g. built by idle
+     * prefetch, are left as they are.
+     */
+    private void setItemLayerType(int layerType){
+        for (int i=0; i<getChildCount(); ++i){
+            View child = getChildAt(i);
+            if (child!=mAxisView && child.getLayerType()!=layerType){
+                child.setLayerType(layerType, null);
+                if (layerType==LAYER_TYPE_HARDWARE && child.getWindowToken()!=null){
+                    child.buildLayer();
+                }
+            }
+        }
+    }
+
+    /**
+     * Promotes item views to hardware layers and counts redraws while items
+     * move, and settles the state when they stop. A reversal neither ends nor
+     * restarts the motion.
+     */
+    private final MotionEngine.Callback mMotionCallback = new MotionEngine.Callback() {
+        @Override
+        public void onMotionStart() {
+            if (shouldUseHardwareLayer()){
+                setItemLayerType(LAYER_TYPE_HARDWARE);
+            }
+            mAnimationStartDrawCount = sumItemDrawCount();
+            final QuadGeometry geometry = getGeometry();
+            final int count = Math.min(geometry.itemCount, mMotionEngine.getItemCount());
+            geometry.getItemBounds(mMotionEngine.getProgress(), count,
+                    mInvalidationTracker.obtainItemBounds(count));
+            mInvalidationTracker.start();
+            mIsTrackingInvalidation = true;
+        }
+
+        @Override
+        public void onMotionFrame() {
+            applyItemProgress();
+        }
+
+        @Override
+        public void onMotionEnd() {
+            mLastAnimationRedrawCount = sumItemDrawCount()-mAnimationStartDrawCount;
+            if (shouldUseHardwareLayer()){
+                setItemLayerType(LAYER_TYPE_NONE);
+            }
+            if (mFrameTracker!=null){
+                mFrameTracker.stop();
+            }
+            if (mState==STATE_EXPANDING){
+                mState = STATE_EXPANDED;
+            }else if (mState==STATE_COLLAPSING){
+                mState = STATE_COLLAPSED;
+                onCollapsed();
+            }
+        }
+    };
+
+    private void startFrameTrackingIfNeeded(long clickNanos){
+        if (mMetricsListener==null || Build.VERSION.SDK_INT < 16){
+            return;
+        }
+        if (mFrameTracker==null){
+            WindowManager wm = (WindowManager)getContext().getSystemService(Context.WINDOW_SERVICE);
+            mFrameTracker = new AnimationFrameTracker(this,
+                    wm.getDefaultDisplay().getRefreshRate());
+        }
+        mFrameTracker.start(!isCollapsing(), clickNanos);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mMetricsListener==null){
+            measureMenu(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+        final long start = System.nanoTime();
+        measureMenu(widthMeasureSpec, heightMeasureSpec);
+        mMetricsListener.onMeasured(this, System.nanoTime()-start);
+    }
+
+    private void measureMenu(int widthMeasureSpec, int heightMeasureSpec) {
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        measureChildren(widthMeasureSpec, heightMeasureSpec);
+
+        if (isCollapsing() && !mStableLayoutEnabled){
+            setMeasuredDimension(2*mItemRadius, 2*mItemRadius);
+            return;
+        }
+
+        // Visibility of 'GONE' is considered to be impossible.
+        final QuadGeometry geometry = getGeometry();
+        setMeasuredDimension(geometry.expandedWidth, geometry.expandedHeight);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (mMetricsListener==null){
+            layoutMenu(changed, l, t, r, b);
+            return;
+        }
+        final long start = System.nanoTime();
+        layoutMenu(changed, l, t, r, b);
+        mMetricsListener.onLaidOut(this, System.nanoTime()-start);
+    }
+
+    @SuppressWarnings("ResourceType")
+    private void layoutMenu(boolean changed, int l, int t, int r, int b) {
+        final QuadGeometry geometry = getGeometry();
+        mMotionEngine.setItemCount(geometry.itemCount);
+        // Item views may have been added or resized since the last prefetch.
+        schedulePrefetchIfNeeded();
+        final boolean layoutItems = !isCollapsing() || mStableLayoutEnabled;
+        if (!changed && (!layoutItems || geometry==mLaidOutGeometry)){
+            return;
+        }
+        final int W = r-l;
+        final int H = b-t;
+        final int itemRadius = mItemRadius;
+
+        if (layoutItems) {
+            final float[] offsets = geometry.collapsedOffsets;
+            final boolean isHidden = isCollapsing() && !isAnimating();
+            int index = 0;
+            for (int i = 0; i < getChildCount(); ++i) {
+                View child = getChildAt(i);
+                if (child == mAxisView){
+                    continue;
+                }
+                layoutItemView(child, index, geometry);
+                if (isHidden){
+                    // Only happens in stable layout.
+                    child.setTranslationX(offsets[2*index]);
+                    child.setTranslationY(offsets[2*index+1]);
+                    child.setVisibility(INVISIBLE);
+                }
+                ++index;
+            }
+            mLaidOutGeometry = geometry;
+        }
+
+        int axisL = geometry.isAxisLeftOfItems? 0: W-2*itemRadius;
+        int axisT = geometry.isAxisUnderItems? H-2*itemRadius: 0;
+        mAxisView.layout(axisL, axisT, axisL+mAxisView.getMeasuredWidth(),
+                axisT+mAxisView.getMeasuredHeight());
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mRenderer!=null){
+            mRenderer.draw(canvas, getGeometry());
+        }
+    }
+
+    @Override
+    protected void dispatchDraw(Canvas canvas) {
+        super.dispatchDraw(canvas);
+        if (!mIsTrackingInvalidation){
+            return;
+        }
+        if (mRenderer==null){
+            // Item views have been moved before this frame is drawn, and
+            // invalidated their own old and new bounds.
+            trackItemViewBounds();
+            mInvalidationTracker.onFrame(null);
+        }
+        if (mInvalidationOverlayPaint!=null){
+            drawInvalidationOverlay(canvas);
+        }
+        // The last frame is drawn after the animation ends.
+        mIsTrackingInvalidation = isAnimating();
+    }
+
+    /**
+     * Pass item views' bounds, including their translation, to the
+     * invalidation tracker.
+     */
+    private void trackItemViewBounds(){
+        final int[] bounds = mInvalidationTracker.obtainItemBounds(getChildCount()-1);
+        int index = 0;
+        for (int i=0; i<getChildCount(); ++i){
+            View child = getChildAt(i);
+            if (child!=mAxisView){
+                final int l = (int)(child.getLeft()+child.getTranslationX());
+                final int t = (int)(child.getTop()+child.getTranslationY());
+                bounds[4*index] = l;
+                bounds[4*index+1] = t;
+                bounds[4*index+2] = l+child.getWidth()+1;
+                bounds[4*index+3] = t+child.getHeight()+1;
+                ++index;
+            }
+        }
+    }
+
+    private void drawInvalidationOverlay(Canvas canvas){
+        final Rect dirtyBounds = mInvalidationTracker.getFrameDirtyBounds();
+        if (dirtyBounds.isEmpty()){
+            return;
+        }
+        final Paint paint = mInvalidationOverlayPaint;
+        paint.setColor(0x40ff0000);
+        for (int i=0; i<mInvalidationTracker.getFrameDirtyCount(); ++i){
+            mInvalidationTracker.getFrameDirty(i, mTmpRect);
+            canvas.drawRect(mTmpRect, paint);
+        }
+        paint.setColor(Color.RED);
+        canvas.drawText(mInvalidationTracker.getFramePixels()+"px", dirtyBounds.left,
+                dirtyBounds.top-paint.ascent(), paint);
+    }
+
+    private boolean isOnAxisView(float x, float y){
+        return x>=mAxisView.getLeft() && x<mAxisView.getRight()
+                && y>=mAxisView.getTop() && y<mAxisView.getBottom();
+    }
+
+    /**
+     * Takes over a gesture which starts on the axis view once it moves
+     * beyond the touch slop, so that the axis view is not clicked.
+     */
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()){
+            case MotionEvent.ACTION_DOWN:
+                mIsAxisTouched = mAxisDragEnabled && isOnAxisView(event.getX(), event.getY());
+                if (mIsAxisTouched){
+                    mDragDownRawX = event.getRawX();
+                    mDragDownRawY = event.getRawY();
+                    if (mVelocityTracker==null){
+                        mVelocityTracker = VelocityTracker.obtain();
+                    }else {
+                        mVelocityTracker.clear();
+                    }
+                    addDragMovement(event);
+                }
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (mIsAxisTouched){
+                    addDragMovement(event);
+                    final float dx = event.getRawX()-mDragDownRawX;
+                    final float dy = event.getRawY()-mDragDownRawY;
+                    if (dx*dx+dy*dy>mTouchSlop*mTouchSlop){
+                        mIsAxisTouched = false;
+                        startAxisDrag();
+                        dragAxisTo(event);
+                        return true;
+                    }
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                mIsAxisTouched = false;
+                break;
+        }
+        return false;
+    }
+
+    /**
+     * Screen coordinates are tracked, since the menu may be moved by the
+     * layout which expanding it requests.
+     */
+    private void addDragMovement(MotionEvent event){
+        final float offsetX = event.getRawX()-event.getX();
+        final float offsetY = event.getRawY()-event.getY();
+        event.offsetLocation(offsetX, offsetY);
+        mVelocityTracker.addMovement(event);
+        event.offsetLocation(-offsetX, -offsetY);
+    }
+
+    private void startAxisDrag(){
+        if (mState==STATE_COLLAPSED){
+            prepareExpanding();
+        }
+        mState = STATE_DRAGGING;
+        mMotionEngine.setItemCount(getItemCount());
+        mDragStartProgress = mMotionEngine.getLeadingProgress();
+        final QuadGeometry geometry = getGeometry();
+        mDragRange = Math.max(1, geometry.expandedWidth-2*mItemRadius);
+        mDragDirX = geometry.isAxisLeftOfItems? SQRT_HALF: -SQRT_HALF;
+        mDragDirY = geometry.isAxisUnderItems? -SQRT_HALF: SQRT_HALF;
+        final ViewParent parent = getParent();
+        if (parent!=null){
+            parent.requestDisallowInterceptTouchEvent(true);
+        }
+        invalidateVirtualItems();
+    }
+
+    /**
+     * Items are moved from the cached geometry, without any layout or animator.
+     */
+    private void dragAxisTo(MotionEvent event){
+        final float distance = (event.getRawX()-mDragDownRawX)*mDragDirX
+                +(event.getRawY()-mDragDownRawY)*mDragDirY;
+        final float progress = mDragStartProgress+distance/mDragRange;
+        mMotionEngine.holdAt(Math.max(0, Math.min(1, progress)));
+    }
+
+    /**
+     * @param canFling false to settle to the nearer state, whatever the
+     *                 velocity is
+     */
+    private void releaseAxisDrag(boolean canFling){
+        float velocity = 0;
+        if (canFling){
+            mVelocityTracker.computeCurrentVelocity(1000);
+            velocity = mVelocityTracker.getXVelocity()*mDragDirX
+                    +mVelocityTracker.getYVelocity()*mDragDirY;
+        }
+        final boolean expand = Math.abs(velocity)>=mMinFlingVelocity?
+                velocity>0: mMotionEngine.getLeadingProgress()>=0.5f;
+        mState = expand? STATE_EXPANDING: STATE_COLLAPSING;
+        startFrameTrackingIfNeeded(mMetricsListener!=null? System.nanoTime(): 0);
+        mMotionEngine.animateTo(expand? 1: 0, velocity/mDragRange, mSettleMotion);
+        invalidateVirtualItems();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mState==STATE_DRAGGING){
+            switch (event.getActionMasked()){
+                case MotionEvent.ACTION_MOVE:
+                    addDragMovement(event);
+                    dragAxisTo(event);
+                    break;
+                case MotionEvent.ACTION_UP:
+                    addDragMovement(event);
+                    releaseAxisDrag(true);
+                    break;
+                case MotionEvent.ACTION_CANCEL:
+                    releaseAxisDrag(false);
+                    break;
+            }
+            return true;
+        }
+        if (mRenderer==null){
+            return super.onTouchEvent(event);
+        }
+        switch (event.getActionMasked()){
+            case MotionEvent.ACTION_DOWN:
+                mPressedItem = findItemAt(event.getX(), event.getY());
+                break;
+            case MotionEvent.ACTION_UP:
+                if (mPressedItem>=0 && findItemAt(event.getX(), event.getY())==mPressedItem){
+                    performItemClick(mPressedItem);
+                }
+                mPressedItem = -1;
+                return true;
+            case MotionEvent.ACTION_CANCEL:
+                mPressedItem = -1;
+                return true;
+        }
+        return mPressedItem>=0 || super.onTouchEvent(event);
+    }
+
+    /**
+     * While expanded, a touched item view is found from the angle to the axis
+     * view's center instead of walking all children, and the whole gesture is
+     * routed to it. Other touches go through the default dispatch.
+     */
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        final int action = event.getActionMasked();
+        if (action==MotionEvent.ACTION_DOWN){
+            mItemTouchTarget = findItemViewAt(event.getX(), event.getY());
+        }
+        if (mItemTouchTarget<0){
+            return super.dispatchTouchEvent(event);
+        }
+        final int index = mItemTouchTarget;
+        if (action==MotionEvent.ACTION_UP || action==MotionEvent.ACTION_CANCEL){
+            mItemTouchTarget = -1;
+        }
+        if (index>=getChildCount()-1){
+            // Items have changed during the gesture.
+            return false;
+        }
+        return dispatchTouchEventToItemView(event, index);
+    }
+
+    /**
+     * @return index of the item view under (x, y), or -1 if not expanded,
+     * animating, or none is hit
+     */
+    private int findItemViewAt(float x, float y){
+        final QuadGeometry geometry = mLaidOutGeometry;
+        if (mRenderer!=null || isCollapsing() || isAnimating() || geometry==null
+                || geometry.itemCount!=getChildCount()-1){
+            return -1;
+        }
+        if (isOnAxisView(x, y)){
+            return -1;
+        }
+        final int index = geometry.findItemAt(x+getScrollX(), y+getScrollY(), mItemTouchSlop);
+        if (index<0 || getChildAt(index).getVisibility()!=VISIBLE){
+            return -1;
+        }
+        return index;
+    }
+
+    private boolean dispatchTouchEventToItemView(MotionEvent event, int index){
+        final View child = getChildAt(index);
+        final QuadGeometry geometry = mLaidOutGeometry;
+        float x = event.getX()+getScrollX()-child.getLeft();
+        float y = event.getY()+getScrollY()-child.getTop();
+        if (geometry!=null && geometry.findItemAt(event.getX()+getScrollX(),
+                event.getY()+getScrollY(), mItemTouchSlop)==index){
+            // Touches within the slop land on the item's edge, so that it stays pressed.
+            x = Math.max(0, Math.min(child.getWidth()-1, x));
+            y = Math.max(0, Math.min(child.getHeight()-1, y));
+        }
+        final float offsetX = x-event.getX();
+        final float offsetY = y-event.getY();
+        event.offsetLocation(offsetX, offsetY);
+        final boolean handled = child.dispatchTouchEvent(event);
+        event.offsetLocation(-offsetX, -offsetY);
+        return handled;
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        if (mAccessibilityHelper!=null && mAccessibilityHelper.dispatchHoverEvent(event)){
+            return true;
+        }
+        return super.dispatchHoverEvent(event);
+    }
+
+    /**
+     * @return index of the item drawn under (x, y) in canvas render mode, or
+     * -1 if none or not expanded
+     */
+    private int findItemAt(float x, float y){
+        if (mRenderer==null || mState!=STATE_EXPANDED){
+            return -1;
+        }
+        return mRenderer.findItemAt(x, y, getGeometry(), mItemTouchSlop);
+    }
+
+    /**
+     * Refresh virtual views of items drawn in canvas render mode.
+     */
+    private void invalidateVirtualItems(){
+        if (mAccessibilityHelper!=null){
+            mAccessibilityHelper.invalidateRoot();
+        }
+    }
+
+    /**
+     * Items drawn in canvas render mode pass this menu to their click listeners.
+     */
+    private void performItemClick(int index){
+        playSoundEffect(SoundEffectConstants.CLICK);
+        OnClickListener listener = mItems.get(index).getOnClickListener();
+        if (listener!=null){
+            listener.onClick(this);
+        }
+        mAccessibilityHelper.sendEventForVirtualView(index, AccessibilityEvent.TYPE_VIEW_CLICKED);
+    }
+
+    private void layoutItemView(View child, int index, QuadGeometry geometry){
+        final int itemRadius = mItemRadius;
+        // (cx, cy) is the coordinates of item view's center.
+        final int cx = (int)geometry.itemCenters[2*index];
+        final int cy = (int)geometry.itemCenters[2*index+1];
+        child.layout(cx - itemRadius, cy - itemRadius,
+                cx + itemRadius, cy + itemRadius);
+    }
+
+    private boolean isAnimating(){
+        return mState==STATE_EXPANDING || mState==STATE_COLLAPSING
+                || mState==STATE_DRAGGING;
+    }
+
+    public void addItem(MenuItem item){
+        addItems(Collections.singletonList(item));
+    }
+
+    /**
+     * Add items after existing ones, with only one layout request.
+     */
+    public void addItems(List<MenuItem> items){
+        checkNoAdapter();
+        for (MenuItem item: items){
+            addItemViewInLayout(item);
+        }
+        requestLayout();
+        invalidate();
+        invalidateVirtualItems();
+    }
+
+    /**
+     * Replace all items with the given ones, with only one layout request.
+     * Existing item views are rebound to the new items instead of being
+     * recreated.
+     */
+    public void setItems(List<MenuItem> items){
+        checkNoAdapter();
+        final int oldCount = mItems.size();
+        final int newCount = items.size();
+        final int reusedCount = Math.min(oldCount, newCount);
+        for (int i=0; i<reusedCount; ++i){
+            MenuItem item = items.get(i);
+            if (mItems.get(i)!=item){
+                mItems.set(i, item);
+                bindItemAt(i, mRenderer!=null? null: (CircleImageView)getChildAt(i), item);
+            }
+        }
+        if (oldCount>newCount){
+            removeItemsInLayout(newCount, oldCount-newCount);
+            mItems.subList(newCount, oldCount).clear();
+        }else {
+            for (int i=oldCount; i<newCount; ++i){
+                addItemViewInLayout(items.get(i));
+            }
+        }
+        requestLayout();
+        invalidate();
+        invalidateVirtualItems();
+    }
+
+    /**
+     * @return true if the item has been found and removed
+     */
+    public boolean removeItem(MenuItem item){
+        final int index = mItems.indexOf(item);
+        if (index<0){
+            return false;
+        }
+        mItems.remove(index);
+        removeItemsInLayout(index, 1);
+        requestLayout();
+        invalidate();
+        invalidateVirtualItems();
+        return true;
+    }
+
+    /**
+     * Rebind the item view of an added item after its properties changed.
+     * @return true if the item has been found and rebound
+     */
+    public boolean updateItem(MenuItem item){
+        final int index = mItems.indexOf(item);
+        if (index<0){
+            return false;
+        }
+        bindItemAt(index, mRenderer!=null? null: (CircleImageView)getChildAt(index), item);
+        invalidateVirtualItems();
+        return true;
+    }
+
+    /**
+     * Provide items by an adapter instead of {@link MenuItem}s. Item views are
+     * bound lazily when this menu expands and released when it collapses,
+     * so a collapsed menu holds no item views at all, unless idle prefetch
+     * is enabled. Added items are removed when switching to an adapter.
+     * @param adapter null to provide items by {@link MenuItem}s again
+     */
+    public void setAdapter(Adapter adapter){
+        if (adapter==mAdapter){
+            return;
+        }
+        if (adapter!=null){
+            if (mRenderer!=null){
+                throw new RuntimeException("Adapter is not supported in canvas render mode!");
+            }
+            if (adapter.mMenu!=null){
+                throw new RuntimeException("Adapter has been set to another menu!");
+            }
+        }
+        if (mAdapter!=null){
+            unbindAdapterItems();
+            mAdapter.mMenu = null;
+        }else {
+            // From items to an adapter.
+            setItems(Collections.<MenuItem>emptyList());
+        }
+        mAdapter = adapter;
+        if (adapter!=null){
+            adapter.mMenu = this;
+            if (!isCollapsing()){
+                bindAdapterItemsIfNeeded();
+            }
+        }
+        requestLayout();
+        invalidate();
+        schedulePrefetchIfNeeded();
+    }
+    public Adapter getAdapter(){
+        return mAdapter;
+    }
+
+    private void onAdapterChanged(){
+        final boolean wasBound = mAdapterItemsBound;
+        unbindAdapterItems();
+        if (wasBound && mState!=STATE_COLLAPSED){
+            bindAdapterItemsIfNeeded();
+        }
+        requestLayout();
+        invalidate();
+        schedulePrefetchIfNeeded();
+    }
+
+    private void bindAdapterItemsIfNeeded(){
+        if (mAdapter==null || mAdapterItemsBound){
+            return;
+        }
+        final int itemCount = mAdapter.getItemCount();
+        // Items prefetched while collapsed are bound already.
+        for (int i=getChildCount()-1; i<itemCount; ++i){
+            bindAdapterItemInLayout(i);
+        }
+        mAdapterItemsBound = true;
+        invalidate();
+    }
+
+    /**
+     * Bind the adapter's item at the position to an item view after bound
+     * ones, and lay it out in place, so that stable layout needs no layout
+     * request.
+     * @return the item view
+     */
+    private View bindAdapterItemInLayout(int position){
+        CircleImageView view = obtainItemView();
+        bindItemAt(position, view, null);
+        addViewInLayout(view, position, view.getLayoutParams(), true);
+        final int spec = MeasureSpec.makeMeasureSpec(2*mItemRadius, MeasureSpec.EXACTLY);
+        view.measure(spec, spec);
+        layoutItemView(view, position, getGeometry());
+        return view;
+    }
+
+    /**
+     * Recycle all adapter item views, including those prefetched so far.
+     */
+    private void unbindAdapterItems(){
+        mAdapterItemsBound = false;
+        if (mAdapter==null || getChildCount()==1){
+            return;
+        }
+        recycleItemViewsInLayout(0, getChildCount()-1);
+        invalidate();
+    }
+
+    private void checkNoAdapter(){
+        if (mAdapter!=null){
+            throw new RuntimeException("Items are provided by the adapter!");
+        }
+    }
+
+    public List<MenuItem> getItems(){
+        return Collections.unmodifiableList(mItems);
+    }
+
+    /**
+     * Share a pool of item views among menus, e.g. menus in rows of a list.
+     * All menus sharing a pool should use the same context and item radius.
+     */
+    public void setRecycledItemViewPool(RecycledItemViewPool pool){
+        mRecycledItemViewPool = CommonUtil.checkNotNull(pool);
+    }
+    public RecycledItemViewPool getRecycledItemViewPool(){
+        return mRecycledItemViewPool;
+    }
+
+    /**
+     * Item views are kept in the order of items and placed before the axis view.
+     */
+    private void addItemViewInLayout(MenuItem item){
+        if (mRenderer!=null){
+            mRenderer.addSlot();
+            bindItemAt(mItems.size(), null, item);
+            mItems.add(item);
+            return;
+        }
+        CircleImageView view = obtainItemView();
+        bindItemAt(mItems.size(), view, item);
+        mItems.add(item);
+        addViewInLayout(view, getChildCount()-1, view.getLayoutParams(), true);
+    }
+
+    /**
+     * @return a recycled or new item view, with layout params of item size
+     */
+    private CircleImageView obtainItemView(){
+        CircleImageView view = mRecycledItemViewPool.get();
+        if (view==null){
+            view = new CircleImageView(getContext());
+        }
+        LayoutParams lp = view.getLayoutParams();
+        if (lp==null){
+            view.setLayoutParams(new LayoutParams(2*mItemRadius, 2*mItemRadius));
+        }else {
+            lp.width = lp.height = 2*mItemRadius;
+        }
+        return view;
+    }
+
+    private void removeItemsInLayout(int start, int count){
+        if (mRenderer!=null){
+            mRenderer.removeSlots(start, count);
+            return;
+        }
+        recycleItemViewsInLayout(start, count);
+    }
+
+    private void recycleItemViewsInLayout(int start, int count){
+        for (int i=start; i<start+count; ++i){
+            CircleImageView view = (CircleImageView)getChildAt(i);
+            IconLoader.cancel(view);
+            mRecycledItemViewPool.put(view);
+        }
+        removeViewsInLayout(start, count);
+    }
+
+    /**
+     * Bind the item, or the adapter's item at the position if null, timing it
+     * if a metrics listener is set. In canvas render mode, the view is null and
+     * the item is bound to the renderer.
+     */
+    private void bindItemAt(int position, CircleImageView view, MenuItem item){
+        final long start = mMetricsListener!=null? System.nanoTime(): 0;
+        if (mRenderer!=null){
+            mRenderer.bind(position, item);
+        }else if (item!=null){
+            bindItemView(view, item);
+        }else {
+            mAdapter.bind(position, view);
+        }
+        if (mMetricsListener!=null){
+            mMetricsListener.onItemBound(this, position, System.nanoTime()-start);
+        }
+    }
+
+    /**
+     * The item view must have layout params of its size, which its icon
+     * will be decoded to.
+     */
+    private static void bindItemView(ImageView view, MenuItem item){
+        if (view instanceof CircleImageView){
+            IconLoader.cancel((CircleImageView)view);
+        }
+        if (item.getIcon()!=null) {
+            view.setImageDrawable(item.getIcon());
+        }else {
+            view.setImageDrawable(new ColorDrawable(
+                    UiUtil.getColor(view.getContext(), R.color.quad_bubble_menu_item_default)));
+        }
+        view.setContentDescription(item.getName());
+        view.setOnClickListener(item.getOnClickListener());
+        if (item.getIconSource()!=null && view instanceof CircleImageView){
+            IconLoader.load((CircleImageView)view, item.getIconSource(),
+                    view.getLayoutParams().width);
+        }
+    }
+
+    /**
+     * Exposes items drawn in canvas render mode as virtual views.
+     */
+    private class ItemAccessibilityHelper extends ExploreByTouchHelper{
+
+        ItemAccessibilityHelper(View host){
+            super(host);
+        }
+
+        @Override
+        protected int getVirtualViewAt(float x, float y) {
+            final int index = findItemAt(x, y);
+            return index>=0? index: INVALID_ID;
+        }
+
+        @Override
+        protected void getVisibleVirtualViews(List<Integer> virtualViewIds) {
+            if (isCollapsing()){
+                return;
+            }
+            for (int i=0; i<mItems.size(); ++i){
+                virtualViewIds.add(i);
+            }
+        }
+
+        @Override
+        protected void onPopulateNodeForVirtualView(int virtualViewId,
+                                                    AccessibilityNodeInfoCompat node) {
+            if (mRenderer==null || virtualViewId>=mItems.size()){
+                // Items have changed since the node was requested.
+                node.setContentDescription("");
+                mTmpRect.setEmpty();
+                node.setBoundsInParent(mTmpRect);
+                return;
+            }
+            node.setContentDescription(mItems.get(virtualViewId).getName());
+            mRenderer.getItemBounds(virtualViewId, getGeometry(), mTmpRect);
+            node.setBoundsInParent(mTmpRect);
+            node.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
+            node.setClickable(true);
+        }
+
+        @Override
+        protected boolean onPerformActionForVirtualView(int virtualViewId, int action,
+                                                        Bundle arguments) {
+            if (action==AccessibilityNodeInfoCompat.ACTION_CLICK
+                    && virtualViewId<mItems.size()){
+                performItemClick(virtualViewId);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Expanded size of a menu and positions of its items, which can be
+     * obtained on any thread ahead of time. Immutable. Identical snapshots
+     * and menus share one computation.
+     */
+    public static final class LayoutSnapshot{
+
+        final QuadGeometry mGeometry;
+
+        private LayoutSnapshot(QuadGeometry geometry){
+            mGeometry = geometry;
+        }
+
+        /**
+         * Thread-safe.
+         * @param quadrantLocation {@link #TOP_START}, {@link #TOP_END},
+         *                         {@link #BOTTOM_START} or {@link #BOTTOM_END}
+         * @param isRtl whether the menu's layout direction is right to left
+         * @param layoutMode {@link #LAYOUT_MODE_SINGLE_ARC} or {@link #LAYOUT_MODE_RINGS}
+         */
+        public static LayoutSnapshot obtain(int itemCount, int itemRadius, int itemSpace,
+                                            int minDistanceToAxisView, int quadrantLocation,
+                                            boolean isRtl, int layoutMode){
+            if (itemCount<0 || itemRadius<=0 || itemSpace<0 || minDistanceToAxisView<0){
+                throw new RuntimeException("Illegal dimensions!");
+            }
+            if (quadrantLocation!= TOP_START && quadrantLocation!= TOP_END
+                    && quadrantLocation!= BOTTOM_START && quadrantLocation!= BOTTOM_END){
+                throw new RuntimeException("Illegal quadLocation!");
+            }
+            if (layoutMode!=LAYOUT_MODE_SINGLE_ARC && layoutMode!=LAYOUT_MODE_RINGS){
+                throw new RuntimeException("Illegal layoutMode!");
+            }
+            return new LayoutSnapshot(QuadGeometryCache.obtain(itemCount, itemRadius, itemSpace,
+                    minDistanceToAxisView, isAxisUnderItems(quadrantLocation),
+                    isAxisLeftOfItems(quadrantLocation, isRtl), layoutMode==LAYOUT_MODE_RINGS));
+        }
+
+        public int getItemCount(){
+            return mGeometry.itemCount;
+        }
+
+        /**
+         * Size of the menu when expanded.
+         */
+        public int getExpandedWidth(){
+            return mGeometry.expandedWidth;
+        }
+        public int getExpandedHeight(){
+            return mGeometry.expandedHeight;
+        }
+
+        /**
+         * Center of the item at the position, relative to the menu's top-left
+         * corner when expanded.
+         */
+        public float getItemCenterX(int position){
+            return mGeometry.itemCenters[2*position];
+        }
+        public float getItemCenterY(int position){
+            return mGeometry.itemCenters[2*position+1];
+        }
+
+        /**
+         * Translation which moves the item at the position from its expanded
+         * center onto the axis view's center.
+         */
+        public float getCollapsedOffsetX(int position){
+            return mGeometry.collapsedOffsets[2*position];
+        }
+        public float getCollapsedOffsetY(int position){
+            return mGeometry.collapsedOffsets[2*position+1];
+        }
+    }
+
+    /**
+     * Receives metrics of a menu on the UI thread. Durations are in nanoseconds.
+     */
+    public interface MetricsListener{
+
+        void onMeasured(QuadBubbleMenu menu, long durationNanos);
+
+        void onLaidOut(QuadBubbleMenu menu, long durationNanos);
+
+        /**
+         * An expand/collapse animation drew its first frame.
+         * @param latencyNanos time from the axis view being clicked to the first frame
+         */
+        void onAnimationStarted(QuadBubbleMenu menu, boolean isExpanding, long latencyNanos);
+
+        /**
+         * An expand/collapse animation ended or was cancelled.
+         * @param droppedFrameCount vsyncs passed without a frame during the animation
+         */
+        void onAnimationFinished(QuadBubbleMenu menu, boolean isExpanding, int frameCount,
+                                 int droppedFrameCount);
+
+        /**
+         * An item view was bound, not counting its icon decoded off the UI thread.
+         */
+        void onItemBound(QuadBubbleMenu menu, int position, long durationNanos);
+    }
+
+    /**
+     * Provides items lazily. Item views are bound only when the menu expands.
+     */
+    public static abstract class Adapter{
+
+        private QuadBubbleMenu mMenu = null;
+
+        public abstract int getItemCount();
+
+        /**
+         * Bind the item at the position to the item view, e.g. by
+         * {@link #bindMenuItem(ImageView, MenuItem)}. The item view may have been
+         * bound to another item before.
+         */
+        public abstract void bind(int position, ImageView itemView);
+
+        /**
+         * Bind a {@link MenuItem} to the item view, as items added by
+         * {@link QuadBubbleMenu#addItem(MenuItem)} are.
+         */
+        protected final void bindMenuItem(ImageView itemView, MenuItem item){
+            bindItemView(itemView, item);
+        }
+
+        /**
+         * Rebind item views if the menu is expanded and remeasure it.
+         */
+        public final void notifyDataSetChanged(){
+            if (mMenu!=null){
+                mMenu.onAdapterChanged();
+            }
+        }
+    }
+
+    /**
+     * A bounded pool of item views, which may be shared by several menus
+     * on the same screen. Must be used on the UI thread only.
+     */
+    public static class RecycledItemViewPool{
+
+        private static final int DEFAULT_MAX_SIZE = 16;
+
+        private final List<CircleImageView> mViews = new ArrayList<>();
+        private int mMaxSize;
+
+        public RecycledItemViewPool(){
+            this(DEFAULT_MAX_SIZE);
+        }
+        public RecycledItemViewPool(int maxSize){
+            mMaxSize = maxSize;
+        }
+
+        /**
+         * Views exceeding the new size are dropped.
+         */
+        public void setMaxSize(int maxSize){
+            mMaxSize = maxSize;
+            while (mViews.size()>maxSize){
+                mViews.remove(mViews.size()-1);
+            }
+        }
+        public int getMaxSize(){
+            return mMaxSize;
+        }
+
+        public int getRecycledCount(){
+            return mViews.size();
+        }
+
+        public void clear(){
+            mViews.clear();
+        }
+
+        CircleImageView get(){
+            final int size = mViews.size();
+            return size==0? null: mViews.remove(size-1);
+        }
+
+        void put(CircleImageView view){
+            if (mViews.size()>=mMaxSize){
+                return;
+            }
+            view.setImageDrawable(null);
+            view.setContentDescription(null);
+            view.setOnClickListener(null);
+            view.setTranslationX(0);
+            view.setTranslationY(0);
+            view.setVisibility(VISIBLE);
+            if (view.getLayerType()==LAYER_TYPE_HARDWARE){
+                // Built by idle prefetch.
+                view.setLayerType(LAYER_TYPE_NONE, null);
+            }
+            mViews.add(view);
+        }
+    }
+
+    public static class MenuItem{
+        private String mName;
+        private Drawable mIcon;
+        private IconSource mIconSource;
+        private OnClickListener mOnClickListener;
+
+        public MenuItem(){}
+        public MenuItem(String name, Drawable icon){
+            this(name, icon, null);
+        }
+        public MenuItem(String name, Drawable icon, OnClickListener listener){
+            mName = name;
+            mIcon = icon;
+            mOnClickListener = listener;
+        }
+
+        public void setName(String name){
+            mName = name;
+        }
+        public String getName(){
+            return mName;
+        }
+        public void setIcon(Drawable icon){
+            mIcon = icon;
+        }
+        public Drawable getIcon(){
+            return mIcon;
+        }
+
+        /**
+         * Set where the icon is decoded from. The decoded icon replaces the one
+         * set by {@link #setIcon(Drawable)}, which is shown while decoding.
+         */
+        public void setIconSource(IconSource iconSource){
+            mIconSource = iconSource;
+        }
+        public IconSource getIconSource(){
+            return mIconSource;
         }
         public void setOnClickListener(OnClickListener listener){
             mOnClickListener = listener;
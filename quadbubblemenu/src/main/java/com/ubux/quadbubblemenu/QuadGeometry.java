@@ -0,0 +1,242 @@
+package com.ubux.quadbubblemenu;
+
+import java.util.Arrays;
+
+
+/**
+ * Geometry of an expanded {@link QuadBubbleMenu}: its size and the center of
+ * every item view. Computed once for a group of inputs and shared by measuring,
+ * layout and animations until any of the inputs changes.
+ * <p>
+ * Items are placed on concentric 90 degrees arcs (rings) around the axis view,
+ * evenly spread on each ring. A single-arc geometry puts all items on one ring,
+ * growing it as items are added; a multi-ring geometry fills rings from the
+ * innermost one, each as densely as the item space allows, so that many items
+ * fit in a bounded area.
+ */
+final class QuadGeometry {
+
+    final int itemCount;
+    final int itemRadius;
+    final int itemSpace;
+    final int minDistanceToAxisView;
+    final boolean isAxisUnderItems;
+    final boolean isAxisLeftOfItems;
+    final boolean isMultiRing;
+
+    /**
+     * Size of the menu when expanded.
+     */
+    final int expandedWidth;
+    final int expandedHeight;
+
+    /**
+     * (cx, cy) of each item view's center, relative to the menu's top-left
+     * corner, in the order of item views.
+     */
+    final float[] itemCenters;
+
+    /**
+     * (dx, dy) of each item view, the translation which moves it from its
+     * expanded center onto the axis view's center.
+     */
+    final float[] collapsedOffsets;
+
+    /**
+     * Center of the axis view.
+     */
+    final float axisCx;
+    final float axisCy;
+
+    /**
+     * Item count, index of the first item and radius of each ring, from the
+     * innermost one.
+     */
+    private final int[] mRingCounts;
+    private final int[] mRingStarts;
+    private final float[] mRingRadii;
+
+    /**
+     * Distance between centers of adjacent items, and between adjacent rings.
+     */
+    private final float mItemCenterDist;
+
+    QuadGeometry(int itemCount, int itemRadius, int itemSpace, int minDistanceToAxisView,
+                 boolean isAxisUnderItems, boolean isAxisLeftOfItems){
+        this(itemCount, itemRadius, itemSpace, minDistanceToAxisView,
+                isAxisUnderItems, isAxisLeftOfItems, false);
+    }
+
+    QuadGeometry(int itemCount, int itemRadius, int itemSpace, int minDistanceToAxisView,
+                 boolean isAxisUnderItems, boolean isAxisLeftOfItems, boolean isMultiRing){
+        this.itemCount = itemCount;
+        this.itemRadius = itemRadius;
+        this.itemSpace = itemSpace;
+        this.minDistanceToAxisView = minDistanceToAxisView;
+        this.isAxisUnderItems = isAxisUnderItems;
+        this.isAxisLeftOfItems = isAxisLeftOfItems;
+        this.isMultiRing = isMultiRing;
+        itemCenters = new float[2*itemCount];
+        collapsedOffsets = new float[2*itemCount];
+        mItemCenterDist = 2*itemRadius+itemSpace;
+        // Distance from the axis view's center to the nearest possible item's center.
+        final float minRadius = 2*itemRadius+minDistanceToAxisView;
+
+        if (itemCount==0){
+            expandedWidth = expandedHeight = 2*itemRadius;
+            mRingCounts = new int[0];
+            mRingRadii = new float[0];
+        }else if (itemCount==1){
+            expandedWidth = 2*itemRadius;
+            expandedHeight = 4*itemRadius+minDistanceToAxisView;
+            mRingCounts = new int[]{1};
+            mRingRadii = new float[]{minRadius};
+        }else if (!isMultiRing){
+            // Radians angle of two adjacent fan shapes.
+            final double theta = Math.toRadians(90)/(itemCount-1);
+            float tmpEdgeSize = (float)(mItemCenterDist/2/Math.sin(theta/2)+2*itemRadius);
+            float minEdgeSize = 4*itemRadius+minDistanceToAxisView;
+            expandedWidth = expandedHeight =
+                    Float.compare(tmpEdgeSize, minEdgeSize)>0?(int)tmpEdgeSize:(int)minEdgeSize;
+            mRingCounts = new int[]{itemCount};
+            mRingRadii = new float[]{expandedWidth-2*itemRadius};
+        }else {
+            mRingCounts = fillRings(itemCount, minRadius, mItemCenterDist);
+            mRingRadii = new float[mRingCounts.length];
+            for (int k=0; k<mRingRadii.length; ++k){
+                mRingRadii[k] = minRadius+k*mItemCenterDist;
+            }
+            expandedWidth = expandedHeight = (int)mRingRadii[mRingRadii.length-1]+2*itemRadius;
+        }
+
+        axisCx = isAxisLeftOfItems? itemRadius: expandedWidth-itemRadius;
+        axisCy = isAxisUnderItems? expandedHeight-itemRadius: itemRadius;
+
+        mRingStarts = new int[mRingCounts.length];
+        int index = 0;
+        for (int k=0; k<mRingCounts.length; ++k){
+            mRingStarts[k] = index;
+            final int count = mRingCounts[k];
+            final float radius = mRingRadii[k];
+            for (int j=0; j<count; ++j, ++index){
+                final double angle = getItemAngle(count, j);
+                final int nCos = (int)(radius*Math.cos(angle));
+                final int nSin = (int)(radius*Math.sin(angle));
+                // (0, 0) is mapped to the menu's top-left corner.
+                itemCenters[2*index] = isAxisLeftOfItems? axisCx+nCos: axisCx-nCos;
+                itemCenters[2*index+1] = isAxisUnderItems? axisCy-nSin: axisCy+nSin;
+            }
+        }
+
+        for (int i=0; i<itemCount; ++i){
+            collapsedOffsets[2*i] = axisCx-itemCenters[2*i];
+            collapsedOffsets[2*i+1] = axisCy-itemCenters[2*i+1];
+        }
+    }
+
+    /**
+     * @return radians angle of the item at the position of a ring, from the
+     * horizontal edge of the quadrant
+     */
+    private double getItemAngle(int ringItemCount, int position){
+        if (ringItemCount==1){
+            // A single item stands above or below the axis view, or in the
+            // middle of an outer ring.
+            return Math.toRadians(itemCount==1? 90: 45);
+        }
+        return Math.toRadians(90)/(ringItemCount-1)*position;
+    }
+
+    /**
+     * @return item count of each ring, filling inner rings first
+     */
+    private static int[] fillRings(int itemCount, float minRadius, float itemCenterDist){
+        int[] counts = new int[itemCount];
+        int ringCount = 0;
+        int remaining = itemCount;
+        for (float radius=minRadius; remaining>0; radius+=itemCenterDist){
+            final int count = Math.min(remaining, getRingCapacity(radius, itemCenterDist));
+            counts[ringCount++] = count;
+            remaining -= count;
+        }
+        return Arrays.copyOf(counts, ringCount);
+    }
+
+    /**
+     * @return how many items fit on a 90 degrees arc of the radius, with
+     * adjacent centers at least itemCenterDist apart
+     */
+    static int getRingCapacity(float radius, float itemCenterDist){
+        if (itemCenterDist>=2*radius){
+            return 1;
+        }
+        final double minTheta = 2*Math.asin(itemCenterDist/2/radius);
+        return (int)(Math.toRadians(90)/minTheta+1e-9)+1;
+    }
+
+    int getRingCount(){
+        return mRingCounts.length;
+    }
+
+    /**
+     * Find the expanded item under (x, y) in constant time: the distance from
+     * the axis view's center picks the ring, and the angle picks the only
+     * candidate on it, which is then checked by distance.
+     * @param slop extra distance around each item which still hits it
+     * @return index of the item, or -1 if none
+     */
+    int findItemAt(float x, float y, float slop){
+        if (itemCount==0){
+            return -1;
+        }
+        // Items are mirrored into the first quadrant around the axis view's center.
+        final float dx = Math.abs(x-axisCx);
+        final float dy = Math.abs(y-axisCy);
+        int ring = 0;
+        if (mRingCounts.length>1){
+            final float distance = (float)Math.sqrt(dx*dx+dy*dy);
+            ring = Math.round((distance-mRingRadii[0])/mItemCenterDist);
+            ring = Math.max(0, Math.min(mRingCounts.length-1, ring));
+        }
+        final int count = mRingCounts[ring];
+        int index = mRingStarts[ring];
+        if (count>1){
+            final double angle = Math.atan2(dy, dx);
+            final int position = (int)Math.round(angle/getItemAngle(count, 1));
+            index += Math.max(0, Math.min(count-1, position));
+        }
+        final float cdx = x-itemCenters[2*index];
+        final float cdy = y-itemCenters[2*index+1];
+        final float maxDistance = itemRadius+slop;
+        return cdx*cdx+cdy*cdy<=maxDistance*maxDistance? index: -1;
+    }
+
+    /**
+     * Bounds of the first count items at their progress, as (left, top,
+     * right, bottom) of each, plus one pixel for anti-aliased edges.
+     * @param progress progress of each item, 0 when collapsed onto the axis
+     *                 view and 1 when expanded
+     */
+    void getItemBounds(float[] progress, int count, int[] outBounds){
+        final int radius = itemRadius+1;
+        for (int i=0; i<count; ++i){
+            final float remaining = 1-progress[i];
+            final int cx = (int)(itemCenters[2*i]+collapsedOffsets[2*i]*remaining);
+            final int cy = (int)(itemCenters[2*i+1]+collapsedOffsets[2*i+1]*remaining);
+            outBounds[4*i] = cx-radius;
+            outBounds[4*i+1] = cy-radius;
+            outBounds[4*i+2] = cx+radius;
+            outBounds[4*i+3] = cy+radius;
+        }
+    }
+
+    boolean matches(int itemCount, int itemRadius, int itemSpace, int minDistanceToAxisView,
+                    boolean isAxisUnderItems, boolean isAxisLeftOfItems, boolean isMultiRing){
+        return this.itemCount==itemCount && this.itemRadius==itemRadius
+                && this.itemSpace==itemSpace
+                && this.minDistanceToAxisView==minDistanceToAxisView
+                && this.isAxisUnderItems==isAxisUnderItems
+                && this.isAxisLeftOfItems==isAxisLeftOfItems
+                && this.isMultiRing==isMultiRing;
+    }
+}
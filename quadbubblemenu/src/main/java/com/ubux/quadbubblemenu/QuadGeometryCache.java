@@ -0,0 +1,84 @@
+package com.ubux.quadbubblemenu;
+
+import android.support.v4.util.LruCache;
+
+
+/**
+ * Geometries shared by all menus and {@link QuadBubbleMenu.LayoutSnapshot}s,
+ * keyed by their inputs. Thread-safe: geometries are immutable once computed,
+ * and a missing one is computed by the calling thread.
+ */
+final class QuadGeometryCache {
+
+    private static final int MAX_SIZE = 32;
+
+    private static final LruCache<Key, QuadGeometry> sCache =
+            new LruCache<Key, QuadGeometry>(MAX_SIZE) {
+                @Override
+                protected QuadGeometry create(Key key) {
+                    return new QuadGeometry(key.itemCount, key.itemRadius, key.itemSpace,
+                            key.minDistanceToAxisView, key.isAxisUnderItems,
+                            key.isAxisLeftOfItems, key.isMultiRing);
+                }
+            };
+
+    static QuadGeometry obtain(int itemCount, int itemRadius, int itemSpace,
+                               int minDistanceToAxisView, boolean isAxisUnderItems,
+                               boolean isAxisLeftOfItems, boolean isMultiRing){
+        return sCache.get(new Key(itemCount, itemRadius, itemSpace, minDistanceToAxisView,
+                isAxisUnderItems, isAxisLeftOfItems, isMultiRing));
+    }
+
+    private static final class Key {
+
+        final int itemCount;
+        final int itemRadius;
+        final int itemSpace;
+        final int minDistanceToAxisView;
+        final boolean isAxisUnderItems;
+        final boolean isAxisLeftOfItems;
+        final boolean isMultiRing;
+
+        Key(int itemCount, int itemRadius, int itemSpace, int minDistanceToAxisView,
+            boolean isAxisUnderItems, boolean isAxisLeftOfItems, boolean isMultiRing){
+            this.itemCount = itemCount;
+            this.itemRadius = itemRadius;
+            this.itemSpace = itemSpace;
+            this.minDistanceToAxisView = minDistanceToAxisView;
+            this.isAxisUnderItems = isAxisUnderItems;
+            this.isAxisLeftOfItems = isAxisLeftOfItems;
+            this.isMultiRing = isMultiRing;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this==o){
+                return true;
+            }
+            if (!(o instanceof Key)){
+                return false;
+            }
+            Key key = (Key)o;
+            return itemCount==key.itemCount && itemRadius==key.itemRadius
+                    && itemSpace==key.itemSpace
+                    && minDistanceToAxisView==key.minDistanceToAxisView
+                    && isAxisUnderItems==key.isAxisUnderItems
+                    && isAxisLeftOfItems==key.isAxisLeftOfItems
+                    && isMultiRing==key.isMultiRing;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = itemCount;
+            result = 31*result+itemRadius;
+            result = 31*result+itemSpace;
+            result = 31*result+minDistanceToAxisView;
+            result = 31*result+(isAxisUnderItems? 1: 0);
+            result = 31*result+(isAxisLeftOfItems? 1: 0);
+            result = 31*result+(isMultiRing? 1: 0);
+            return result;
+        }
+    }
+
+    private QuadGeometryCache(){}
+}
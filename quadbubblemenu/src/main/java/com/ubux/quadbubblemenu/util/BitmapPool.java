@@ -0,0 +1,103 @@
+package com.ubux.quadbubblemenu.util;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pool of mutable bitmaps bucketed by width, height and config, bounded by
+ * bytes. Bitmaps taken from it can be used as {@code BitmapFactory.Options#inBitmap}
+ * or drawn into. Thread safe.
+ */
+public class BitmapPool {
+
+    private static BitmapPool sDefault = null;
+
+    /**
+     * Bitmaps of the same width, height and config share one bucket.
+     */
+    private final SparseArray<List<Bitmap>> mBuckets = new SparseArray<>();
+    private int mMaxSizeInBytes;
+    private int mSizeInBytes = 0;
+
+    public static synchronized BitmapPool getDefault(){
+        if (sDefault==null){
+            sDefault = new BitmapPool((int)(Runtime.getRuntime().maxMemory()/32));
+        }
+        return sDefault;
+    }
+
+    public BitmapPool(int maxSizeInBytes){
+        mMaxSizeInBytes = maxSizeInBytes;
+    }
+
+    /**
+     * @return a bitmap cleared to transparent, or null if none matches
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config){
+        List<Bitmap> bucket = mBuckets.get(bucketKey(width, height, config));
+        if (bucket==null || bucket.isEmpty()){
+            return null;
+        }
+        Bitmap bm = bucket.remove(bucket.size()-1);
+        mSizeInBytes -= getByteCount(bm);
+        bm.eraseColor(0);
+        return bm;
+    }
+
+    /**
+     * Put a bitmap which is no longer used by the caller. Immutable or recycled
+     * bitmaps, and bitmaps exceeding the pool's capacity, are recycled instead.
+     */
+    public synchronized void put(Bitmap bm){
+        if (bm==null || bm.isRecycled()){
+            return;
+        }
+        final int byteCount = getByteCount(bm);
+        if (!bm.isMutable() || bm.getConfig()==null
+                || mSizeInBytes+byteCount>mMaxSizeInBytes){
+            bm.recycle();
+            return;
+        }
+        final int key = bucketKey(bm.getWidth(), bm.getHeight(), bm.getConfig());
+        List<Bitmap> bucket = mBuckets.get(key);
+        if (bucket==null){
+            bucket = new ArrayList<>();
+            mBuckets.put(key, bucket);
+        }
+        bucket.add(bm);
+        mSizeInBytes += byteCount;
+    }
+
+    public synchronized void clear(){
+        for (int i=0; i<mBuckets.size(); ++i){
+            for (Bitmap bm: mBuckets.valueAt(i)){
+                bm.recycle();
+            }
+        }
+        mBuckets.clear();
+        mSizeInBytes = 0;
+    }
+
+    public synchronized int getSizeInBytes(){
+        return mSizeInBytes;
+    }
+
+    public synchronized int getMaxSizeInBytes(){
+        return mMaxSizeInBytes;
+    }
+
+    private static int bucketKey(int width, int height, Bitmap.Config config){
+        return (width & 0x3fff) << 18 | (height & 0x3fff) << 4 | config.ordinal();
+    }
+
+    private static int getByteCount(Bitmap bm){
+        if (Build.VERSION.SDK_INT >= 19){
+            return bm.getAllocationByteCount();
+        }
+        return bm.getByteCount();
+    }
+}
@@ -1,23 +1,25 @@
 package com.ubux.quadbubblemenu.util;
 
+import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.Rect;
-import android.text.TextUtils;
+import android.os.Build;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class CommonUtil {
 
@@ -28,12 +30,7 @@ public class CommonUtil {
      * @return true表示文件名合法；否则不合法
      */
     public static boolean isFileNameLegal(String fName){
-        if(TextUtils.isEmpty(fName)){
-            return false;
-        }
-        Pattern p = Pattern.compile("^[^/\\\\*]*$");
-        Matcher m = p.matcher(fName);
-        return m.matches();
+        return PlainUtil.isFileNameLegal(fName);
     }
 
 
@@ -71,27 +68,8 @@ public class CommonUtil {
      */
     public static int calculateInSampleSize(BitmapFactory.Options options,
                                             int reqWidth, int reqHeight) {
-        final int height = options.outHeight;
-        final int width = options.outWidth;
-        if(reqWidth<=0){
-            reqWidth = width;
-        }
-        if(reqHeight<=0){
-            reqHeight = height;
-        }
-        int inSampleSize = 1;
-
-        if (height > reqHeight || width > reqWidth) {
-
-            final int halfHeight = height / 2;
-            final int halfWidth = width / 2;
-
-            while ((halfHeight / inSampleSize) >= reqHeight
-                    && (halfWidth / inSampleSize) >= reqWidth) {
-                inSampleSize *= 2;
-            }
-        }
-        return inSampleSize;
+        return PlainUtil.calculateInSampleSize(options.outWidth, options.outHeight,
+                reqWidth, reqHeight);
     }
 
     /**
@@ -102,13 +80,26 @@ public class CommonUtil {
      * @return 从bytes中解析出的Bitmap实例
      */
     public static Bitmap scaleToRequestDimension(byte[] bytes, int reqWidth, int reqHeight) {
-        final BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inJustDecodeBounds = true;
-        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
-        options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight);
+        return scaleToRequestDimension(bytes, reqWidth, reqHeight, Bitmap.Config.ARGB_8888, null);
+    }
 
-        options.inJustDecodeBounds = false;
-        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    /**
+     *
+     * @param bytes Bitmap对应的字节数组
+     * @param reqWidth 不可超出的宽度。如果值非正，按照图片的固定宽度，即options内的宽度
+     * @param reqHeight 不可超出的高度。如果值非正，按照图片的固定高度，即options内的高度
+     * @param config 解析使用的Bitmap.Config，如不透明的图片可使用RGB_565
+     * @param pool 尽量从中复用Bitmap（inBitmap）。可以为null
+     * @return 从bytes中解析出的Bitmap实例（如果pool不为null，该实例为mutable）
+     */
+    public static Bitmap scaleToRequestDimension(final byte[] bytes, int reqWidth, int reqHeight,
+                                                 Bitmap.Config config, BitmapPool pool) {
+        return decodeSampled(new Decoder() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+            }
+        }, reqWidth, reqHeight, config, pool);
     }
 
     /**
@@ -119,13 +110,148 @@ public class CommonUtil {
      * @return 从bytes中解析出的Bitmap实例
      */
     public static Bitmap scaleToRequestDimension(String pathName, int reqWidth, int reqHeight) {
+        return scaleToRequestDimension(pathName, reqWidth, reqHeight, Bitmap.Config.ARGB_8888, null);
+    }
+
+    /**
+     *
+     * @param pathName Bitmap对应的文件的绝对路径
+     * @param reqWidth 不可超出的宽度。如果值非正，按照图片的固定宽度，即options内的宽度
+     * @param reqHeight 不可超出的高度。如果值非正，按照图片的固定高度，即options内的高度
+     * @param config 解析使用的Bitmap.Config，如不透明的图片可使用RGB_565
+     * @param pool 尽量从中复用Bitmap（inBitmap）。可以为null
+     * @return 从文件中解析出的Bitmap实例（如果pool不为null，该实例为mutable）
+     */
+    public static Bitmap scaleToRequestDimension(final String pathName, int reqWidth, int reqHeight,
+                                                 Bitmap.Config config, BitmapPool pool) {
+        return decodeSampled(new Decoder() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeFile(pathName, options);
+            }
+        }, reqWidth, reqHeight, config, pool);
+    }
+
+    /**
+     *
+     * @param res 资源所在的Resources
+     * @param resId Bitmap对应的资源id
+     * @param reqWidth 不可超出的宽度。如果值非正，按照图片的固定宽度，即options内的宽度
+     * @param reqHeight 不可超出的高度。如果值非正，按照图片的固定高度，即options内的高度
+     * @return 从资源中解析出的Bitmap实例（不按屏幕密度缩放），或null（如果资源不是位图）
+     */
+    public static Bitmap scaleToRequestDimension(Resources res, int resId,
+                                                 int reqWidth, int reqHeight) {
+        return scaleToRequestDimension(res, resId, reqWidth, reqHeight,
+                Bitmap.Config.ARGB_8888, null);
+    }
+
+    /**
+     *
+     * @param res 资源所在的Resources
+     * @param resId Bitmap对应的资源id
+     * @param reqWidth 不可超出的宽度。如果值非正，按照图片的固定宽度，即options内的宽度
+     * @param reqHeight 不可超出的高度。如果值非正，按照图片的固定高度，即options内的高度
+     * @param config 解析使用的Bitmap.Config，如不透明的图片可使用RGB_565
+     * @param pool 尽量从中复用Bitmap（inBitmap）。可以为null
+     * @return 从资源中解析出的Bitmap实例（不按屏幕密度缩放），或null（如果资源不是位图）
+     */
+    public static Bitmap scaleToRequestDimension(final Resources res, final int resId,
+                                                 int reqWidth, int reqHeight,
+                                                 Bitmap.Config config, BitmapPool pool) {
+        return decodeSampled(new Decoder() {
+            @Override
+            public Bitmap decode(BitmapFactory.Options options) {
+                return BitmapFactory.decodeResource(res, resId, options);
+            }
+        }, reqWidth, reqHeight, config, pool);
+    }
+
+    private interface Decoder {
+        Bitmap decode(BitmapFactory.Options options);
+    }
+
+    private static Bitmap decodeSampled(Decoder decoder, int reqWidth, int reqHeight,
+                                        Bitmap.Config config, BitmapPool pool) {
         final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inScaled = false;
         options.inJustDecodeBounds = true;
-        BitmapFactory.decodeFile(pathName, options);
+        decoder.decode(options);
         options.inSampleSize = calculateInSampleSize(options, reqWidth, reqHeight);
 
         options.inJustDecodeBounds = false;
-        return BitmapFactory.decodeFile(pathName, options);
+        options.inPreferredConfig = config;
+        // 4.4以前，复用的Bitmap尺寸必须与解析结果一致且inSampleSize必须为1
+        if (pool!=null && options.outWidth>0 && options.outHeight>0
+                && (Build.VERSION.SDK_INT>=19 || options.inSampleSize==1)){
+            options.inMutable = true;
+            final int sample = options.inSampleSize;
+            options.inBitmap = pool.get((options.outWidth+sample-1)/sample,
+                    (options.outHeight+sample-1)/sample, config);
+            if (options.inBitmap!=null){
+                try {
+                    return decoder.decode(options);
+                }catch (IllegalArgumentException iae){
+                    // 无法复用，放回池中后重新解析
+                    pool.put(options.inBitmap);
+                    options.inBitmap = null;
+                }
+            }
+        }
+        return decoder.decode(options);
+    }
+
+    /**
+     * 将Bitmap缩放至恰好为指定尺寸。如果宽高比不一致，先基于其中心截取宽高比一致的最大区域。
+     * @param bm 原Bitmap。如果返回了新的实例，原Bitmap将被回收
+     * @param reqWidth 目标宽度
+     * @param reqHeight 目标高度
+     * @return 指定尺寸的Bitmap实例（如果尺寸已经一致，返回原Bitmap）
+     */
+    public static Bitmap scaleToExactDimension(Bitmap bm, int reqWidth, int reqHeight) {
+        final int bmW = bm.getWidth(), bmH = bm.getHeight();
+        if (bmW==reqWidth && bmH==reqHeight){
+            return bm;
+        }
+        final float scale = Math.max((float)reqWidth/bmW, (float)reqHeight/bmH);
+        final int srcW = Math.min(bmW, Math.round(reqWidth/scale));
+        final int srcH = Math.min(bmH, Math.round(reqHeight/scale));
+        Matrix matrix = new Matrix();
+        matrix.setScale((float)reqWidth/srcW, (float)reqHeight/srcH);
+        Bitmap output = Bitmap.createBitmap(bm, (bmW-srcW)/2, (bmH-srcH)/2, srcW, srcH,
+                matrix, true);
+        if (output!=bm){
+            bm.recycle();
+        }
+        return output;
+    }
+
+    /**
+     * 将Bitmap缩放至恰好为指定尺寸，结果尽量从pool中复用。如果宽高比不一致，先基于其中心截取宽高比一致的最大区域。
+     * @param bm 原Bitmap。如果返回了新的实例，原Bitmap将被放回pool
+     * @param reqWidth 目标宽度
+     * @param reqHeight 目标高度
+     * @param pool 提供和回收Bitmap的池
+     * @return 指定尺寸的Bitmap实例（如果尺寸已经一致，返回原Bitmap）
+     */
+    public static Bitmap scaleToExactDimension(Bitmap bm, int reqWidth, int reqHeight,
+                                               BitmapPool pool) {
+        final int bmW = bm.getWidth(), bmH = bm.getHeight();
+        if (bmW==reqWidth && bmH==reqHeight){
+            return bm;
+        }
+        final Bitmap.Config config = bm.getConfig()==null? Bitmap.Config.ARGB_8888: bm.getConfig();
+        Bitmap output = pool.get(reqWidth, reqHeight, config);
+        if (output==null){
+            output = Bitmap.createBitmap(reqWidth, reqHeight, config);
+        }
+        final float scale = Math.max((float)reqWidth/bmW, (float)reqHeight/bmH);
+        Matrix matrix = new Matrix();
+        matrix.setScale(scale, scale);
+        matrix.postTranslate((reqWidth-bmW*scale)/2, (reqHeight-bmH*scale)/2);
+        new Canvas(output).drawBitmap(bm, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        pool.put(bm);
+        return output;
     }
 
     /**
@@ -138,6 +264,29 @@ public class CommonUtil {
         final int bmW = bm.getWidth(), bmH = bm.getHeight();
         //创建一个空白的bitmap
         Bitmap output = Bitmap.createBitmap(bmW, bmH, Bitmap.Config.ARGB_8888);
+        drawRound(bm, output);
+        return output;
+    }
+
+    /**
+     * 与{@link #roundBitmap(Bitmap)}相同，但结果尽量从pool中复用，并且原Bitmap将被放回pool。
+     * @param bm 原Bitmap，调用后不可再使用
+     * @param pool 提供和回收Bitmap的池
+     * @return 转换后的Bitmap实例
+     */
+    public static Bitmap roundBitmap(Bitmap bm, BitmapPool pool){
+        final int bmW = bm.getWidth(), bmH = bm.getHeight();
+        Bitmap output = pool.get(bmW, bmH, Bitmap.Config.ARGB_8888);
+        if (output==null){
+            output = Bitmap.createBitmap(bmW, bmH, Bitmap.Config.ARGB_8888);
+        }
+        drawRound(bm, output);
+        pool.put(bm);
+        return output;
+    }
+
+    private static void drawRound(Bitmap bm, Bitmap output){
+        final int bmW = bm.getWidth(), bmH = bm.getHeight();
         Canvas canvas = new Canvas(output);
         Paint paint = new Paint();
 
@@ -146,7 +295,6 @@ public class CommonUtil {
         paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
         Rect bounds = new Rect(0, 0, bmW, bmH);
         canvas.drawBitmap(bm, bounds, bounds, paint);
-        return output;
     }
 
     /**
@@ -270,5 +418,24 @@ public class CommonUtil {
         }
     }
 
+    /**
+     * @return MD5 digest of the bytes, in lowercase hex
+     */
+    public static String md5Hex(byte[] bytes){
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("MD5").digest(bytes);
+        }catch (NoSuchAlgorithmException e){
+            // Every platform provides MD5.
+            throw new RuntimeException(e);
+        }
+        StringBuilder sb = new StringBuilder(2*digest.length);
+        for (byte b: digest){
+            sb.append(Character.forDigit((b>>4)&0xf, 16))
+                    .append(Character.forDigit(b&0xf, 16));
+        }
+        return sb.toString();
+    }
+
     private CommonUtil(){}
 }
@@ -0,0 +1,54 @@
+package com.ubux.quadbubblemenu.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * 不依赖Android类的工具方法，可以直接在JVM上运行（如benchmark模块）。
+ * {@link CommonUtil}中对应的方法委托到这里。
+ */
+public final class PlainUtil {
+
+    private static final Pattern LEGAL_FILE_NAME = Pattern.compile("^[^/\\\\*]*$");
+
+    /**
+     * @param fName 文件名（null或0长度的字符串不合法）
+     * @return true表示文件名合法；否则不合法
+     */
+    public static boolean isFileNameLegal(String fName){
+        if(fName==null || fName.length()==0){
+            return false;
+        }
+        return LEGAL_FILE_NAME.matcher(fName).matches();
+    }
+
+    /**
+     * @param width 图片的宽度
+     * @param height 图片的高度
+     * @param reqWidth 不可超出的宽度。如果值非正，按照图片的宽度
+     * @param reqHeight 不可超出的高度。如果值非正，按照图片的高度
+     * @return 2的幂次的采样率
+     */
+    public static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        if(reqWidth<=0){
+            reqWidth = width;
+        }
+        if(reqHeight<=0){
+            reqHeight = height;
+        }
+        int inSampleSize = 1;
+
+        if (height > reqHeight || width > reqWidth) {
+
+            final int halfHeight = height / 2;
+            final int halfWidth = width / 2;
+
+            while ((halfHeight / inSampleSize) >= reqHeight
+                    && (halfWidth / inSampleSize) >= reqWidth) {
+                inSampleSize *= 2;
+            }
+        }
+        return inSampleSize;
+    }
+
+    private PlainUtil(){}
+}
@@ -0,0 +1,60 @@
+package com.ubux.quadbubblemenu;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.drawable.ColorDrawable;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowBitmap;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23,
+        shadows = CircleImageViewTest.CountingShadowBitmap.class)
+public class CircleImageViewTest {
+
+    private static final int EDGE_SIZE = 80;
+
+    private CircleImageView mView;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() throws Exception {
+        mView = new CircleImageView(RuntimeEnvironment.application);
+        mView.setImageDrawable(new ColorDrawable(0xffff2222));
+        int spec = View.MeasureSpec.makeMeasureSpec(EDGE_SIZE, View.MeasureSpec.EXACTLY);
+        mView.measure(spec, spec);
+        mView.layout(0, 0, EDGE_SIZE, EDGE_SIZE);
+        mCanvas = new Canvas(Bitmap.createBitmap(EDGE_SIZE, EDGE_SIZE, Bitmap.Config.ARGB_8888));
+    }
+
+    @Test
+    public void draw_allocatesNoBitmap() throws Exception {
+        CountingShadowBitmap.sCreatedCount = 0;
+        for (int i=0; i<600; ++i){
+            mView.draw(mCanvas);
+        }
+        assertEquals(0, CountingShadowBitmap.sCreatedCount);
+    }
+
+    @Implements(Bitmap.class)
+    public static class CountingShadowBitmap extends ShadowBitmap {
+
+        static int sCreatedCount = 0;
+
+        @Implementation
+        public static Bitmap createBitmap(int width, int height, Bitmap.Config config) {
+            ++sCreatedCount;
+            return ShadowBitmap.createBitmap(width, height, config);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.ubux.quadbubblemenu;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs prefetch slices directly, without the Android message queue.
+ */
+public class IdlePrefetcherTest {
+
+    private static final long UNIT_NANOS = 1000000;
+
+    @Test
+    public void slice_stopsWhenBudgetIsSpent() throws Exception {
+        CountingCallback callback = new CountingCallback(100);
+        IdlePrefetcher prefetcher = new IdlePrefetcher(callback);
+        prefetcher.setBudgetNanos(3*UNIT_NANOS);
+
+        assertTrue(prefetcher.runSlice());
+        // A preempted unit may spend the budget earlier.
+        assertTrue(callback.mDoneCount>=1 && callback.mDoneCount<=3);
+        assertTrue(prefetcher.getLastBudgetUsage()>=1);
+    }
+
+    @Test
+    public void slice_runsOneUnitOverBudget() throws Exception {
+        CountingCallback callback = new CountingCallback(100);
+        IdlePrefetcher prefetcher = new IdlePrefetcher(callback);
+        prefetcher.setBudgetNanos(UNIT_NANOS/2);
+
+        assertTrue(prefetcher.runSlice());
+        assertEquals(1, callback.mDoneCount);
+        assertTrue(prefetcher.getLastBudgetUsage()>=2);
+    }
+
+    @Test
+    public void slice_endsWhenNothingIsLeft() throws Exception {
+        CountingCallback callback = new CountingCallback(2);
+        IdlePrefetcher prefetcher = new IdlePrefetcher(callback);
+        prefetcher.setBudgetNanos(100*UNIT_NANOS);
+
+        assertFalse(prefetcher.runSlice());
+        assertEquals(2, callback.mDoneCount);
+        final float usage = prefetcher.getLastBudgetUsage();
+        assertTrue(usage>0 && usage<1);
+
+        // An empty slice keeps the usage of the latest one which did work.
+        assertFalse(prefetcher.runSlice());
+        assertEquals(usage, prefetcher.getLastBudgetUsage(), 0);
+    }
+
+    /**
+     * Each unit busy-waits for {@link #UNIT_NANOS}.
+     */
+    private static class CountingCallback implements IdlePrefetcher.Callback {
+
+        private final int mUnitCount;
+        int mDoneCount = 0;
+
+        CountingCallback(int unitCount){
+            mUnitCount = unitCount;
+        }
+
+        @Override
+        public boolean prefetchNext() {
+            if (mDoneCount>=mUnitCount){
+                return false;
+            }
+            final long start = System.nanoTime();
+            while (System.nanoTime()-start<UNIT_NANOS){
+                // Busy-wait to take exactly one unit.
+            }
+            ++mDoneCount;
+            return true;
+        }
+    }
+}
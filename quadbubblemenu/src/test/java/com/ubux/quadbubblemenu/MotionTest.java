@@ -0,0 +1,90 @@
+package com.ubux.quadbubblemenu;
+
+import android.view.animation.Interpolator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Steps motions at 60fps as the menu does, without the Android runtime.
+ */
+public class MotionTest {
+
+    private static final float FRAME = 1/60f;
+    private static final int MAX_FRAMES = 600;
+
+    private static final Interpolator LINEAR = new Interpolator() {
+        @Override
+        public float getInterpolation(float input) {
+            return input;
+        }
+    };
+
+    @Test
+    public void tween_arrivesAtDuration() throws Exception {
+        final float[] progress = new float[1];
+        final float[] velocity = new float[1];
+        Motion motion = new Motion.Tween(200, LINEAR);
+        int frames = 0;
+        while (motion.step(progress, velocity, 0, 0, 1, (frames+1)*FRAME, FRAME)){
+            assertTrue(progress[0]>0 && progress[0]<1);
+            ++frames;
+        }
+        assertEquals(11, frames);
+        assertEquals(1, progress[0], 0);
+        assertEquals(0, velocity[0], 0);
+    }
+
+    @Test
+    public void tween_shortensWhenStartingPartway() throws Exception {
+        final float[] progress = new float[]{0.5f};
+        final float[] velocity = new float[1];
+        Motion motion = new Motion.Tween(200, LINEAR);
+        assertTrue(motion.step(progress, velocity, 0, 0.5f, 0, 0.05f, 0.05f));
+        assertEquals(0.25f, progress[0], 1e-6);
+        assertTrue(!motion.step(progress, velocity, 0, 0.5f, 0, 0.1f, 0.05f));
+        assertEquals(0, progress[0], 0);
+    }
+
+    @Test
+    public void spring_bouncesWhenUnderDamped() throws Exception {
+        final float[] progress = new float[1];
+        final float[] velocity = new float[1];
+        Motion motion = new Motion.Spring(800, 0.4f);
+        float max = 0;
+        int frames = 0;
+        while (motion.step(progress, velocity, 0, 0, 1, (frames+1)*FRAME, FRAME)){
+            max = Math.max(max, progress[0]);
+            assertTrue(++frames<MAX_FRAMES);
+        }
+        assertTrue(max>1);
+        assertEquals(1, progress[0], 0);
+    }
+
+    @Test
+    public void spring_keepsVelocityOnReversal() throws Exception {
+        final float[] progress = new float[]{0.5f};
+        final float[] velocity = new float[]{5};
+        Motion motion = new Motion.Spring(200, 1);
+        motion.step(progress, velocity, 0, 0.5f, 0, FRAME, FRAME);
+        // Still moving toward the previous target for a while.
+        assertTrue(progress[0]>0.5f);
+    }
+
+    @Test
+    public void decay_arrivesAfterFling() throws Exception {
+        final float[] progress = new float[]{0.2f};
+        final float[] velocity = new float[]{8};
+        Motion motion = new Motion.Decay(4, 2);
+        int frames = 0;
+        float last = progress[0];
+        while (motion.step(progress, velocity, 0, 0.2f, 1, (frames+1)*FRAME, FRAME)){
+            assertTrue(progress[0]>last && progress[0]<1);
+            last = progress[0];
+            assertTrue(++frames<MAX_FRAMES);
+        }
+        assertEquals(1, progress[0], 0);
+    }
+}
@@ -0,0 +1,167 @@
+package com.ubux.quadbubblemenu;
+
+import android.graphics.drawable.ColorDrawable;
+import android.view.View;
+import android.widget.ImageView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowChoreographer;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class QuadBubbleMenuAdapterTest {
+
+    private static final long FRAME_NANOS = 16000000;
+    /**
+     * Frames enough for any motion of the menu to end.
+     */
+    private static final int SETTLE_FRAMES = 60;
+
+    private QuadBubbleMenu mMenu;
+
+    @Before
+    public void setUp() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        ShadowChoreographer.setFrameInterval(FRAME_NANOS);
+        mMenu = new QuadBubbleMenu(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void collapsed_bindsNoItems() throws Exception {
+        CountingAdapter adapter = new CountingAdapter(5);
+        mMenu.setAdapter(adapter);
+        measureAndLayout(mMenu);
+        runFrames(SETTLE_FRAMES);
+
+        assertEquals(1, mMenu.getChildCount());
+        assertSame(mMenu.getAxisView(), mMenu.getChildAt(0));
+        assertTrue(adapter.mBoundPositions.isEmpty());
+    }
+
+    @Test
+    public void expand_bindsEachItemOnce() throws Exception {
+        CountingAdapter adapter = new CountingAdapter(5);
+        mMenu.setAdapter(adapter);
+        measureAndLayout(mMenu);
+
+        toggle();
+        assertEquals(6, mMenu.getChildCount());
+        assertSame(mMenu.getAxisView(), mMenu.getChildAt(5));
+        // No position past the item count is asked for, and none twice.
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), adapter.mBoundPositions);
+    }
+
+    @Test
+    public void collapse_recyclesItemViews() throws Exception {
+        mMenu.setAdapter(new CountingAdapter(5));
+        measureAndLayout(mMenu);
+        toggle();
+        final View firstItemView = mMenu.getChildAt(0);
+
+        toggle();
+        assertEquals(1, mMenu.getChildCount());
+        assertEquals(5, mMenu.getRecycledItemViewPool().getRecycledCount());
+
+        // The next expand takes the views back from the pool.
+        toggle();
+        assertEquals(0, mMenu.getRecycledItemViewPool().getRecycledCount());
+        assertTrue(mMenu.indexOfChild(firstItemView)>=0);
+    }
+
+    @Test
+    public void adapterChange_recyclesItemViews() throws Exception {
+        CountingAdapter adapter = new CountingAdapter(5);
+        mMenu.setAdapter(adapter);
+        measureAndLayout(mMenu);
+        toggle();
+
+        // Fewer items: rebound views come from the pool, the rest stay there.
+        adapter.mItemCount = 3;
+        adapter.mBoundPositions.clear();
+        adapter.notifyDataSetChanged();
+        assertEquals(4, mMenu.getChildCount());
+        assertEquals(2, mMenu.getRecycledItemViewPool().getRecycledCount());
+        assertEquals(Arrays.asList(0, 1, 2), adapter.mBoundPositions);
+
+        CountingAdapter otherAdapter = new CountingAdapter(2);
+        mMenu.setAdapter(otherAdapter);
+        assertEquals(3, mMenu.getChildCount());
+        assertEquals(3, mMenu.getRecycledItemViewPool().getRecycledCount());
+        assertEquals(Arrays.asList(0, 1), otherAdapter.mBoundPositions);
+    }
+
+    @Test
+    public void recycledItemViewPool_keepsAtMost16ByDefault() throws Exception {
+        mMenu.setAdapter(new CountingAdapter(20));
+        measureAndLayout(mMenu);
+        toggle();
+        assertEquals(21, mMenu.getChildCount());
+
+        toggle();
+        assertEquals(1, mMenu.getChildCount());
+        assertEquals(16, mMenu.getRecycledItemViewPool().getMaxSize());
+        assertEquals(16, mMenu.getRecycledItemViewPool().getRecycledCount());
+    }
+
+    /**
+     * Click the axis view and run frames until the motion ends.
+     */
+    private void toggle(){
+        mMenu.getAxisView().performClick();
+        runFrames(SETTLE_FRAMES);
+        measureAndLayout(mMenu);
+    }
+
+    /**
+     * Run the next frames on the paused main looper, {@link #FRAME_NANOS}
+     * apart. Robolectric posts each frame callback at the current time, so
+     * idling the looper would run a whole motion at once.
+     */
+    private static void runFrames(int count){
+        for (int i=0; i<count; ++i){
+            ShadowLooper.runMainLooperOneTask();
+        }
+    }
+
+    private static void measureAndLayout(View v){
+        int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        v.measure(spec, spec);
+        v.layout(0, 0, v.getMeasuredWidth(), v.getMeasuredHeight());
+    }
+
+    private static class CountingAdapter extends QuadBubbleMenu.Adapter {
+
+        int mItemCount;
+        final List<Integer> mBoundPositions = new ArrayList<>();
+
+        CountingAdapter(int itemCount){
+            mItemCount = itemCount;
+        }
+
+        @Override
+        public int getItemCount() {
+            return mItemCount;
+        }
+
+        @Override
+        public void bind(int position, ImageView itemView) {
+            mBoundPositions.add(position);
+            bindMenuItem(itemView, new QuadBubbleMenu.MenuItem("Item"+position,
+                    new ColorDrawable(0xff2222ff)));
+        }
+    }
+}
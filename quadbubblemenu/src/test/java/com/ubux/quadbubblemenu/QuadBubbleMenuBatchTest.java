@@ -0,0 +1,88 @@
+package com.ubux.quadbubblemenu;
+
+import android.content.Context;
+import android.graphics.drawable.ColorDrawable;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class QuadBubbleMenuBatchTest {
+
+    private CountingMenu mMenu;
+
+    @Before
+    public void setUp() throws Exception {
+        mMenu = new CountingMenu(RuntimeEnvironment.application);
+        mMenu.mLayoutRequestCount = 0;
+    }
+
+    @Test
+    public void addItems_requestsLayoutOnce() throws Exception {
+        mMenu.addItems(createItems(30));
+        assertEquals(1, mMenu.mLayoutRequestCount);
+        assertEquals(31, mMenu.getChildCount());
+        assertSame(mMenu.getAxisView(), mMenu.getChildAt(30));
+    }
+
+    @Test
+    public void setItems_requestsLayoutOnceAndReusesViews() throws Exception {
+        mMenu.addItems(createItems(20));
+        View firstItemView = mMenu.getChildAt(0);
+        mMenu.mLayoutRequestCount = 0;
+
+        List<QuadBubbleMenu.MenuItem> newItems = createItems(10);
+        mMenu.setItems(newItems);
+        assertEquals(1, mMenu.mLayoutRequestCount);
+        assertEquals(11, mMenu.getChildCount());
+        assertSame(firstItemView, mMenu.getChildAt(0));
+        assertEquals(newItems, mMenu.getItems());
+    }
+
+    @Test
+    public void removeItem_requestsLayoutOnce() throws Exception {
+        List<QuadBubbleMenu.MenuItem> items = createItems(5);
+        mMenu.addItems(items);
+        mMenu.mLayoutRequestCount = 0;
+
+        assertTrue(mMenu.removeItem(items.get(2)));
+        assertEquals(1, mMenu.mLayoutRequestCount);
+        assertEquals(5, mMenu.getChildCount());
+    }
+
+    private static List<QuadBubbleMenu.MenuItem> createItems(int count){
+        List<QuadBubbleMenu.MenuItem> items = new ArrayList<>();
+        for (int i=0; i<count; ++i){
+            items.add(new QuadBubbleMenu.MenuItem("Item"+i, new ColorDrawable(0xff2222ff)));
+        }
+        return items;
+    }
+
+    private static class CountingMenu extends QuadBubbleMenu {
+
+        int mLayoutRequestCount = 0;
+
+        CountingMenu(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void requestLayout() {
+            ++mLayoutRequestCount;
+            super.requestLayout();
+        }
+    }
+}
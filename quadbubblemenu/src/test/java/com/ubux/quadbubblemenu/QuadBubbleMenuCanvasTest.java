@@ -0,0 +1,173 @@
+package com.ubux.quadbubblemenu;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.drawable.ColorDrawable;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowChoreographer;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class QuadBubbleMenuCanvasTest {
+
+    private static final long FRAME_NANOS = 16000000;
+    /**
+     * Frames enough for any motion of the menu to end.
+     */
+    private static final int SETTLE_FRAMES = 60;
+
+    private DirtyMenu mMenu;
+
+    @Before
+    public void setUp() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        ShadowChoreographer.setFrameInterval(FRAME_NANOS);
+        mMenu = new DirtyMenu(RuntimeEnvironment.application);
+    }
+
+    @Test
+    public void canvasMode_keepsOnlyAxisView() throws Exception {
+        List<QuadBubbleMenu.MenuItem> items = new ArrayList<>();
+        for (int i=0; i<20; ++i){
+            items.add(new QuadBubbleMenu.MenuItem("Item"+i, new ColorDrawable(0xff22ff22)));
+        }
+        mMenu.addItems(items);
+        assertEquals(21, mMenu.getChildCount());
+
+        mMenu.setRenderMode(QuadBubbleMenu.RENDER_MODE_CANVAS);
+        assertEquals(1, mMenu.getChildCount());
+        assertEquals(20, mMenu.getItems().size());
+
+        mMenu.setRenderMode(QuadBubbleMenu.RENDER_MODE_VIEWS);
+        assertEquals(21, mMenu.getChildCount());
+    }
+
+    @Test
+    public void canvasMode_clicksDrawnItem() throws Exception {
+        final View[] clicked = new View[1];
+        mMenu.setRenderMode(QuadBubbleMenu.RENDER_MODE_CANVAS);
+        mMenu.addItem(new QuadBubbleMenu.MenuItem("Item", new ColorDrawable(0xff22ff22),
+                new View.OnClickListener() {
+                    @Override
+                    public void onClick(View v) {
+                        clicked[0] = v;
+                    }
+                }));
+        measureAndLayout(mMenu);
+        mMenu.getAxisView().performClick();
+        runFrames(SETTLE_FRAMES);
+        measureAndLayout(mMenu);
+
+        // A single item is placed above the axis view, at the top-left corner.
+        final float itemRadius = mMenu.getMeasuredWidth()/2f;
+        tap(mMenu, itemRadius, itemRadius);
+        assertSame(mMenu, clicked[0]);
+    }
+
+    @Test
+    public void canvasMode_invalidatesOnlyMovingItems() throws Exception {
+        mMenu.setRenderMode(QuadBubbleMenu.RENDER_MODE_CANVAS);
+        mMenu.setStableLayoutEnabled(true);
+        for (int i=0; i<20; ++i){
+            mMenu.addItem(new QuadBubbleMenu.MenuItem("Item"+i, new ColorDrawable(0xff22ff22)));
+        }
+        measureAndLayout(mMenu);
+        final Canvas canvas = new Canvas(Bitmap.createBitmap(mMenu.getMeasuredWidth(),
+                mMenu.getMeasuredHeight(), Bitmap.Config.ARGB_8888));
+        // Robolectric does not call onDraw from draw.
+        mMenu.drawItems(canvas);
+
+        mMenu.getAxisView().performClick();
+        // Half way through the expand animation, bubbles are spread apart.
+        for (int i=0; i<10; ++i){
+            runFrames(1);
+            mMenu.drawItems(canvas);
+        }
+        mMenu.mDirtyRects.clear();
+        runFrames(1);
+        mMenu.drawItems(canvas);
+
+        final List<Rect> dirtyRects = mMenu.mDirtyRects;
+        assertFalse(dirtyRects.isEmpty());
+        assertTrue(dirtyRects.size()<=20);
+        long pixels = 0;
+        final Rect union = new Rect();
+        for (Rect dirty: dirtyRects){
+            pixels += (long)dirty.width()*dirty.height();
+            union.union(dirty);
+        }
+        assertEquals(pixels, mMenu.getLastFrameInvalidatedPixels());
+        // Each bubble repaints only its own old and new bounds.
+        assertTrue(pixels<(long)union.width()*union.height());
+        assertTrue(pixels<(long)mMenu.getWidth()*mMenu.getHeight());
+    }
+
+    private static void tap(View v, float x, float y){
+        final long now = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, x, y, 0);
+        v.dispatchTouchEvent(down);
+        down.recycle();
+        MotionEvent up = MotionEvent.obtain(now, now, MotionEvent.ACTION_UP, x, y, 0);
+        v.dispatchTouchEvent(up);
+        up.recycle();
+    }
+
+    /**
+     * Run the next frames on the paused main looper, {@link #FRAME_NANOS}
+     * apart. Robolectric posts each frame callback at the current time, so
+     * idling the looper would run a whole motion at once.
+     */
+    private static void runFrames(int count){
+        for (int i=0; i<count; ++i){
+            ShadowLooper.runMainLooperOneTask();
+        }
+    }
+
+    private static void measureAndLayout(View v){
+        int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        v.measure(spec, spec);
+        v.layout(0, 0, v.getMeasuredWidth(), v.getMeasuredHeight());
+    }
+
+    /**
+     * Keeps the regions invalidated by canvas rendering.
+     */
+    private static class DirtyMenu extends QuadBubbleMenu {
+
+        final List<Rect> mDirtyRects = new ArrayList<>();
+
+        DirtyMenu(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void invalidate(Rect dirty) {
+            mDirtyRects.add(new Rect(dirty));
+            super.invalidate(dirty);
+        }
+
+        void drawItems(Canvas canvas){
+            onDraw(canvas);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.ubux.quadbubblemenu;
+
+import android.content.Context;
+import android.graphics.drawable.ColorDrawable;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowChoreographer;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class QuadBubbleMenuMeasureTest {
+
+    private static final long FRAME_NANOS = 16000000;
+    /**
+     * Frames enough for any motion of the menu to end.
+     */
+    private static final int SETTLE_FRAMES = 60;
+
+    private CountingMenu mMenu;
+
+    @Before
+    public void setUp() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        ShadowChoreographer.setFrameInterval(FRAME_NANOS);
+        mMenu = new CountingMenu(RuntimeEnvironment.application);
+        for (int i=0; i<3; ++i){
+            mMenu.addItem(new QuadBubbleMenu.MenuItem("Item"+i, new ColorDrawable(0xff22ff22)));
+        }
+        measureAndLayout(mMenu);
+    }
+
+    @Test
+    public void expand_measuresOncePerStateChange() throws Exception {
+        final int collapsedWidth = mMenu.getMeasuredWidth();
+        mMenu.mMeasureCount = 0;
+
+        mMenu.getAxisView().performClick();
+        // The expand animation must not measure synchronously.
+        assertEquals(0, mMenu.mMeasureCount);
+
+        measureAndLayout(mMenu);
+        assertEquals(1, mMenu.mMeasureCount);
+        assertTrue(mMenu.getMeasuredWidth() > collapsedWidth);
+    }
+
+    @Test
+    public void tapWhileExpanding_reversesWithoutLayout() throws Exception {
+        final int collapsedWidth = mMenu.getMeasuredWidth();
+        mMenu.getAxisView().performClick();
+        measureAndLayout(mMenu);
+        // A few frames into the expand animation.
+        runFrames(3);
+        assertTrue(mMenu.isExpanding());
+
+        mMenu.getAxisView().performClick();
+        assertFalse(mMenu.isLayoutRequested());
+
+        runFrames(SETTLE_FRAMES);
+        mMenu.mMeasureCount = 0;
+        measureAndLayout(mMenu);
+        assertEquals(1, mMenu.mMeasureCount);
+        assertEquals(collapsedWidth, mMenu.getMeasuredWidth());
+    }
+
+    @Test
+    public void toggle_movesItemsOnFirstFrame() throws Exception {
+        mMenu.setStableLayoutEnabled(true);
+        measureAndLayout(mMenu);
+        final View item = mMenu.getChildAt(0);
+        final float collapsedTranslationX = item.getTranslationX();
+
+        mMenu.getAxisView().performClick();
+        runFrames(1);
+        assertTrue(Math.abs(item.getTranslationX())<Math.abs(collapsedTranslationX));
+
+        runFrames(2);
+        final float expandingTranslationX = item.getTranslationX();
+        mMenu.getAxisView().performClick();
+        runFrames(1);
+        assertTrue(item.getTranslationX()!=expandingTranslationX);
+    }
+
+    @Test
+    public void dragAxis_movesItemsWithoutLayout() throws Exception {
+        mMenu.setStableLayoutEnabled(true);
+        measureAndLayout(mMenu);
+        final View item = mMenu.getChildAt(0);
+        final float collapsedTranslationX = item.getTranslationX();
+        final View axis = mMenu.getAxisView();
+        final float downX = axis.getLeft()+axis.getWidth()/2f;
+        final float downY = axis.getTop()+axis.getHeight()/2f;
+        // Items lie toward the center of the menu.
+        final float toX = mMenu.getMeasuredWidth()/2f;
+        final float toY = mMenu.getMeasuredHeight()/2f;
+        mMenu.mMeasureCount = 0;
+
+        final long downTime = SystemClock.uptimeMillis();
+        dispatch(mMenu, downTime, downTime, MotionEvent.ACTION_DOWN, downX, downY);
+        dispatch(mMenu, downTime, downTime+16, MotionEvent.ACTION_MOVE,
+                (downX+toX)/2, (downY+toY)/2);
+        dispatch(mMenu, downTime, downTime+32, MotionEvent.ACTION_MOVE, toX, toY);
+        assertFalse(mMenu.isLayoutRequested());
+        assertTrue(Math.abs(item.getTranslationX())<Math.abs(collapsedTranslationX));
+        assertTrue(item.getTranslationX()!=0);
+
+        // Released past half way without a fling.
+        dispatch(mMenu, downTime, downTime+1000, MotionEvent.ACTION_UP, toX, toY);
+        runFrames(SETTLE_FRAMES);
+        assertEquals(0, item.getTranslationX(), 0);
+        assertEquals(0, mMenu.mMeasureCount);
+    }
+
+    private static void dispatch(View v, long downTime, long eventTime, int action,
+                                 float x, float y){
+        MotionEvent event = MotionEvent.obtain(downTime, eventTime, action, x, y, 0);
+        v.dispatchTouchEvent(event);
+        event.recycle();
+    }
+
+    /**
+     * Run the next frames on the paused main looper, {@link #FRAME_NANOS}
+     * apart. Robolectric posts each frame callback at the current time, so
+     * idling the looper would run a whole motion at once.
+     */
+    private static void runFrames(int count){
+        for (int i=0; i<count; ++i){
+            ShadowLooper.runMainLooperOneTask();
+        }
+    }
+
+    private static void measureAndLayout(View v){
+        int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        v.measure(spec, spec);
+        v.layout(0, 0, v.getMeasuredWidth(), v.getMeasuredHeight());
+    }
+
+    private static class CountingMenu extends QuadBubbleMenu {
+
+        int mMeasureCount = 0;
+
+        CountingMenu(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            ++mMeasureCount;
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+    }
+}
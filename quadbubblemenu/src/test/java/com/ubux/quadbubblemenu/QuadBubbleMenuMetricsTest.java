@@ -0,0 +1,91 @@
+package com.ubux.quadbubblemenu;
+
+import android.graphics.drawable.ColorDrawable;
+import android.view.View;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class QuadBubbleMenuMetricsTest {
+
+    private QuadBubbleMenu mMenu;
+    private CountingListener mListener;
+
+    @Before
+    public void setUp() throws Exception {
+        mMenu = new QuadBubbleMenu(RuntimeEnvironment.application);
+        mListener = new CountingListener();
+    }
+
+    @Test
+    public void listener_receivesMeasureLayoutAndBind() throws Exception {
+        mMenu.setMetricsListener(mListener);
+        mMenu.addItem(new QuadBubbleMenu.MenuItem("Item0", new ColorDrawable(0xff22ff22)));
+        mMenu.addItem(new QuadBubbleMenu.MenuItem("Item1", new ColorDrawable(0xff22ff22)));
+        measureAndLayout(mMenu);
+
+        assertEquals(2, mListener.mBindCount);
+        assertEquals(1, mListener.mLastBoundPosition);
+        assertEquals(1, mListener.mMeasureCount);
+        assertEquals(1, mListener.mLayoutCount);
+    }
+
+    @Test
+    public void removedListener_receivesNothing() throws Exception {
+        mMenu.setMetricsListener(mListener);
+        mMenu.setMetricsListener(null);
+        mMenu.addItem(new QuadBubbleMenu.MenuItem("Item0", new ColorDrawable(0xff22ff22)));
+        measureAndLayout(mMenu);
+
+        assertEquals(0, mListener.mBindCount);
+        assertEquals(0, mListener.mMeasureCount);
+        assertEquals(0, mListener.mLayoutCount);
+    }
+
+    private static void measureAndLayout(View v){
+        int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        v.measure(spec, spec);
+        v.layout(0, 0, v.getMeasuredWidth(), v.getMeasuredHeight());
+    }
+
+    private static class CountingListener implements QuadBubbleMenu.MetricsListener {
+
+        int mMeasureCount = 0;
+        int mLayoutCount = 0;
+        int mBindCount = 0;
+        int mLastBoundPosition = -1;
+
+        @Override
+        public void onMeasured(QuadBubbleMenu menu, long durationNanos) {
+            ++mMeasureCount;
+        }
+
+        @Override
+        public void onLaidOut(QuadBubbleMenu menu, long durationNanos) {
+            ++mLayoutCount;
+        }
+
+        @Override
+        public void onAnimationStarted(QuadBubbleMenu menu, boolean isExpanding, long latencyNanos) {
+        }
+
+        @Override
+        public void onAnimationFinished(QuadBubbleMenu menu, boolean isExpanding, int frameCount,
+                                        int droppedFrameCount) {
+        }
+
+        @Override
+        public void onItemBound(QuadBubbleMenu menu, int position, long durationNanos) {
+            ++mBindCount;
+            mLastBoundPosition = position;
+        }
+    }
+}
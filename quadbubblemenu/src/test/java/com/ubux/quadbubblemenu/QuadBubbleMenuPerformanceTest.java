@@ -0,0 +1,247 @@
+package com.ubux.quadbubblemenu;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.drawable.ColorDrawable;
+import android.view.View;
+import android.view.accessibility.AccessibilityManager;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowAccessibilityManager;
+import org.robolectric.shadows.ShadowChoreographer;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Toggles menus of several sizes frame by frame and fails when measure and
+ * layout passes, per-frame draws, bitmap allocations or allocated bytes exceed
+ * the budgets in {@code performance_budgets.properties}.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23,
+        shadows = {CircleImageViewTest.CountingShadowBitmap.class,
+                QuadBubbleMenuPerformanceTest.CachingShadowAccessibilityManager.class})
+public class QuadBubbleMenuPerformanceTest {
+
+    private static final long FRAME_NANOS = 16000000;
+    /**
+     * Enough frames for an expand or collapse animation to finish.
+     */
+    private static final int FRAMES_PER_ANIMATION = 30;
+    /**
+     * Round trips run before counting allocations, so class loading and
+     * first-time lazy state are not charged to the toggles.
+     */
+    private static final int WARM_UP_ROUND_TRIPS = 5;
+    private static final int MEASURED_ROUND_TRIPS = 10;
+
+    private static Properties sBudgets = null;
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{0} items")
+    public static Collection<Object[]> itemCounts(){
+        return Arrays.asList(new Object[][]{{1}, {2}, {5}, {20}, {100}});
+    }
+
+    private final int mItemCount;
+    private CountingMenu mMenu;
+    private Canvas mCanvas;
+    private int mMaxItemDrawsInFrame;
+
+    public QuadBubbleMenuPerformanceTest(int itemCount){
+        mItemCount = itemCount;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        ShadowChoreographer.setFrameInterval(FRAME_NANOS);
+        mMenu = new CountingMenu(RuntimeEnvironment.application);
+        List<QuadBubbleMenu.MenuItem> items = new ArrayList<>(mItemCount);
+        for (int i=0; i<mItemCount; ++i){
+            items.add(new QuadBubbleMenu.MenuItem("Item"+i, new ColorDrawable(0xff22ff22)));
+        }
+        mMenu.addItems(items);
+        measureAndLayout(mMenu);
+        mCanvas = new Canvas();
+        mMenu.drawChildren(mCanvas);
+
+        mMenu.mMeasureCount = mMenu.mLayoutCount = 0;
+        mMaxItemDrawsInFrame = 0;
+        CircleImageViewTest.CountingShadowBitmap.sCreatedCount = 0;
+    }
+
+    @Test
+    public void toggle_staysWithinBudgets() throws Exception {
+        final int startDrawCount = sumItemDrawCount();
+
+        mMenu.getAxisView().performClick();
+        runFrames(true);
+        mMenu.getAxisView().performClick();
+        runFrames(true);
+
+        assertTrue("Items were never drawn", sumItemDrawCount()>startDrawCount);
+        assertWithinBudget("measurePassesPerToggle", mMenu.mMeasureCount);
+        assertWithinBudget("layoutPassesPerToggle", mMenu.mLayoutCount);
+        assertWithinBudget("itemDrawsPerFrame",
+                (mMaxItemDrawsInFrame+mItemCount-1)/mItemCount);
+        assertWithinBudget("bitmapAllocationsPerToggle",
+                CircleImageViewTest.CountingShadowBitmap.sCreatedCount);
+    }
+
+    /**
+     * Counts bytes allocated on the main thread by expand and collapse round
+     * trips, including the motion frames and traversals. Drawing is left out:
+     * Robolectric's canvas records every call as a string, which says nothing
+     * about the allocations of a real canvas.
+     */
+    @Test
+    public void toggle_allocatesWithinBudget() throws Exception {
+        for (int i=0; i<WARM_UP_ROUND_TRIPS; ++i){
+            toggleRoundTrip();
+        }
+
+        final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i=0; i<MEASURED_ROUND_TRIPS; ++i){
+            toggleRoundTrip();
+        }
+        final long allocatedBytes = threadBean.getThreadAllocatedBytes(threadId)-startBytes;
+
+        assertWithinBudget("allocatedBytesPerToggle", (int)(allocatedBytes/MEASURED_ROUND_TRIPS));
+    }
+
+    private void toggleRoundTrip(){
+        mMenu.getAxisView().performClick();
+        runFrames(false);
+        mMenu.getAxisView().performClick();
+        runFrames(false);
+    }
+
+    /**
+     * Run frame callbacks one by one on the paused main looper, running a
+     * traversal for each frame as the view root would. Robolectric posts each
+     * frame callback at the current time, so idling the looper would run a
+     * whole motion at once.
+     */
+    private void runFrames(boolean draw){
+        for (int i=0; i<FRAMES_PER_ANIMATION; ++i){
+            ShadowLooper.runMainLooperOneTask();
+            if (mMenu.isLayoutRequested()){
+                measureAndLayout(mMenu);
+            }
+            if (draw){
+                final int drawCount = sumItemDrawCount();
+                mMenu.drawChildren(mCanvas);
+                mMaxItemDrawsInFrame = Math.max(mMaxItemDrawsInFrame, sumItemDrawCount()-drawCount);
+            }
+        }
+    }
+
+    private int sumItemDrawCount(){
+        int sum = 0;
+        for (int i=0; i<mMenu.getChildCount(); ++i){
+            View child = mMenu.getChildAt(i);
+            if (child!=mMenu.getAxisView()){
+                sum += ((CircleImageView)child).getDrawCount();
+            }
+        }
+        return sum;
+    }
+
+    private void assertWithinBudget(String key, int actual) throws IOException {
+        final int budget = Integer.parseInt(getBudgets().getProperty(key));
+        assertTrue(key+" with "+mItemCount+" items: "+actual+" exceeds the budget "+budget,
+                actual<=budget);
+    }
+
+    private static synchronized Properties getBudgets() throws IOException {
+        if (sBudgets==null){
+            Properties budgets = new Properties();
+            InputStream in = QuadBubbleMenuPerformanceTest.class
+                    .getResourceAsStream("performance_budgets.properties");
+            try {
+                budgets.load(in);
+            }finally {
+                in.close();
+            }
+            sBudgets = budgets;
+        }
+        return sBudgets;
+    }
+
+    private static void measureAndLayout(View v){
+        int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        v.measure(spec, spec);
+        v.layout(0, 0, v.getMeasuredWidth(), v.getMeasuredHeight());
+    }
+
+    private static class CountingMenu extends QuadBubbleMenu {
+
+        int mMeasureCount = 0;
+        int mLayoutCount = 0;
+
+        CountingMenu(Context context) {
+            super(context);
+        }
+
+        @Override
+        protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+            ++mMeasureCount;
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        }
+
+        @Override
+        protected void onLayout(boolean changed, int l, int t, int r, int b) {
+            ++mLayoutCount;
+            super.onLayout(changed, l, t, r, b);
+        }
+
+        /**
+         * Robolectric's View.draw does not dispatch to children.
+         */
+        void drawChildren(Canvas canvas){
+            dispatchDraw(canvas);
+        }
+    }
+
+    /**
+     * Keeps one accessibility manager per context as the platform does.
+     * Robolectric creates a new manager and service on every lookup, and a
+     * view looks it up on each translation change, which would bury the
+     * menu's own allocations.
+     */
+    @Implements(AccessibilityManager.class)
+    public static class CachingShadowAccessibilityManager extends ShadowAccessibilityManager {
+
+        private static Context sContext = null;
+        private static AccessibilityManager sInstance = null;
+
+        @Implementation
+        public static AccessibilityManager getInstance(Context context) throws Exception {
+            if (sInstance==null || sContext!=context){
+                sInstance = ShadowAccessibilityManager.getInstance(context);
+                sContext = context;
+            }
+            return sInstance;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.ubux.quadbubblemenu;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Paint;
+import android.graphics.drawable.ColorDrawable;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.view.View;
+import android.widget.ImageView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowChoreographer;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class QuadBubbleMenuPrefetchTest {
+
+    private static final long FRAME_NANOS = 16000000;
+    /**
+     * Frames enough for any motion of the menu to end, and for idle prefetch
+     * of a few items to finish.
+     */
+    private static final int SETTLE_FRAMES = 60;
+    private static final int ITEM_COUNT = 5;
+
+    private Activity mActivity;
+    private QuadBubbleMenu mMenu;
+    private QuadBubbleMenu.RecycledItemViewPool mPool;
+
+    @Before
+    public void setUp() throws Exception {
+        ShadowLooper.pauseMainLooper();
+        ShadowChoreographer.setFrameInterval(FRAME_NANOS);
+        mActivity = Robolectric.setupActivity(Activity.class);
+        mMenu = new QuadBubbleMenu(mActivity);
+        mMenu.setHardwareLayerAnimationEnabled(true);
+        mMenu.setIdlePrefetchEnabled(true);
+        // Item views come from the pool, so their layers can be counted.
+        mPool = new QuadBubbleMenu.RecycledItemViewPool();
+        for (int i=0; i<ITEM_COUNT; ++i){
+            mPool.put(new CountingItemView(mActivity));
+        }
+        mMenu.setRecycledItemViewPool(mPool);
+    }
+
+    @Test
+    public void prefetchedAdapter_firstExpandBindsAndBuildsNothing() throws Exception {
+        CountingAdapter adapter = new CountingAdapter(ITEM_COUNT);
+        mMenu.setAdapter(adapter);
+        mActivity.setContentView(mMenu);
+        measureAndLayout(mMenu);
+        runIdleFrames(SETTLE_FRAMES);
+        assertEquals(ITEM_COUNT, adapter.mBindCount);
+        assertEquals(ITEM_COUNT, sumLayerBuildCount());
+
+        final View firstItemView = mMenu.getChildAt(0);
+        mMenu.getAxisView().performClick();
+        runFrames(SETTLE_FRAMES);
+        measureAndLayout(mMenu);
+        assertEquals(ITEM_COUNT, adapter.mBindCount);
+        assertEquals(ITEM_COUNT, sumLayerBuildCount());
+        assertEquals(0, mPool.getRecycledCount());
+        assertSame(firstItemView, mMenu.getChildAt(0));
+    }
+
+    @Test
+    public void prefetchedItems_firstExpandBuildsNoLayers() throws Exception {
+        // Without stable layout, collapsed items are never laid out.
+        for (int i=0; i<ITEM_COUNT; ++i){
+            mMenu.addItem(new QuadBubbleMenu.MenuItem("Item"+i, new ColorDrawable(0xff22ff22)));
+        }
+        mActivity.setContentView(mMenu);
+        measureAndLayout(mMenu);
+        runIdleFrames(SETTLE_FRAMES);
+        assertEquals(ITEM_COUNT, sumLayerBuildCount());
+
+        mMenu.getAxisView().performClick();
+        runFrames(SETTLE_FRAMES);
+        assertEquals(ITEM_COUNT, sumLayerBuildCount());
+    }
+
+    @Test
+    public void idlePrefetch_runsOneSlicePerFrame() throws Exception {
+        CountingAdapter adapter = new CountingAdapter(ITEM_COUNT);
+        // Each slice prefetches a single item.
+        mMenu.setPrefetchBudgetNanos(1);
+        mMenu.setAdapter(adapter);
+        mActivity.setContentView(mMenu);
+        measureAndLayout(mMenu);
+        // Attached by the first traversal.
+        while (mMenu.getWindowToken()==null){
+            runFrames(1);
+        }
+
+        runIdleHandlers();
+        assertEquals(1, adapter.mBindCount);
+        // Idle again before the next frame.
+        runIdleHandlers();
+        assertEquals(1, adapter.mBindCount);
+
+        // The next frame, and any traversal queued before it.
+        runFrames(3);
+        runIdleHandlers();
+        assertEquals(2, adapter.mBindCount);
+    }
+
+    private int sumLayerBuildCount(){
+        int sum = 0;
+        for (int i=0; i<mMenu.getChildCount(); ++i){
+            View child = mMenu.getChildAt(i);
+            if (child instanceof CountingItemView){
+                sum += ((CountingItemView)child).mLayerBuildCount;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Let the main looper go idle after each frame.
+     */
+    private static void runIdleFrames(int count) throws Exception {
+        for (int i=0; i<count; ++i){
+            runIdleHandlers();
+            runFrames(1);
+        }
+    }
+
+    /**
+     * Robolectric never lets the main looper's queue go idle, so run its idle
+     * handlers as the queue does.
+     */
+    @SuppressWarnings("unchecked")
+    private static void runIdleHandlers() throws Exception {
+        final MessageQueue queue = Looper.myQueue();
+        Field field = MessageQueue.class.getDeclaredField("mIdleHandlers");
+        field.setAccessible(true);
+        List<MessageQueue.IdleHandler> handlers =
+                new ArrayList<>((List<MessageQueue.IdleHandler>)field.get(queue));
+        for (MessageQueue.IdleHandler handler: handlers){
+            if (!handler.queueIdle()){
+                queue.removeIdleHandler(handler);
+            }
+        }
+    }
+
+    /**
+     * Run the next frames on the paused main looper, {@link #FRAME_NANOS}
+     * apart. Robolectric posts each frame callback at the current time, so
+     * idling the looper would run a whole motion at once.
+     */
+    private static void runFrames(int count){
+        for (int i=0; i<count; ++i){
+            ShadowLooper.runMainLooperOneTask();
+        }
+    }
+
+    private static void measureAndLayout(View v){
+        int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        v.measure(spec, spec);
+        v.layout(0, 0, v.getMeasuredWidth(), v.getMeasuredHeight());
+    }
+
+    private static class CountingAdapter extends QuadBubbleMenu.Adapter {
+
+        private final int mItemCount;
+        int mBindCount = 0;
+
+        CountingAdapter(int itemCount){
+            mItemCount = itemCount;
+        }
+
+        @Override
+        public int getItemCount() {
+            return mItemCount;
+        }
+
+        @Override
+        public void bind(int position, ImageView itemView) {
+            ++mBindCount;
+            bindMenuItem(itemView, new QuadBubbleMenu.MenuItem("Item"+position,
+                    new ColorDrawable(0xff2222ff)));
+        }
+    }
+
+    /**
+     * Counts hardware layers built with content, i.e. of a laid out view.
+     */
+    private static class CountingItemView extends CircleImageView {
+
+        int mLayerBuildCount = 0;
+        /**
+         * Robolectric's render node never takes a layer type, so the view
+         * would keep reporting none.
+         */
+        private int mLayerType = LAYER_TYPE_NONE;
+
+        CountingItemView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void setLayerType(int layerType, Paint paint) {
+            super.setLayerType(layerType, paint);
+            mLayerType = layerType;
+        }
+
+        @Override
+        public int getLayerType() {
+            return mLayerType;
+        }
+
+        @Override
+        public void buildLayer() {
+            if (getLayerType()==LAYER_TYPE_HARDWARE && getWidth()>0 && getHeight()>0){
+                ++mLayerBuildCount;
+            }
+            super.buildLayer();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.ubux.quadbubblemenu;
+
+import android.graphics.drawable.ColorDrawable;
+import android.view.View;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class QuadBubbleMenuSnapshotTest {
+
+    private static final int ITEM_COUNT = 40;
+
+    @Test
+    public void obtain_sharesOneGeometryAcrossThreads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<QuadBubbleMenu.LayoutSnapshot>> futures = new ArrayList<>();
+        for (int i=0; i<8; ++i){
+            futures.add(executor.submit(new Callable<QuadBubbleMenu.LayoutSnapshot>() {
+                @Override
+                public QuadBubbleMenu.LayoutSnapshot call() throws Exception {
+                    return QuadBubbleMenu.LayoutSnapshot.obtain(ITEM_COUNT, 60, 24, 48,
+                            QuadBubbleMenu.TOP_END, false, QuadBubbleMenu.LAYOUT_MODE_RINGS);
+                }
+            }));
+        }
+        final QuadGeometry geometry = futures.get(0).get().mGeometry;
+        for (Future<QuadBubbleMenu.LayoutSnapshot> future: futures){
+            assertSame(geometry, future.get().mGeometry);
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    public void menu_appliesMatchingSnapshot() throws Exception {
+        QuadBubbleMenu menu = new QuadBubbleMenu(RuntimeEnvironment.application);
+        menu.setStableLayoutEnabled(true);
+        QuadBubbleMenu.LayoutSnapshot snapshot = QuadBubbleMenu.LayoutSnapshot.obtain(ITEM_COUNT,
+                menu.getItemRadius(), menu.getItemSpace(), menu.getMinDistanceToAxisView(),
+                menu.getQuadrantLocation(), menu.isRtl(), menu.getLayoutMode());
+        List<QuadBubbleMenu.MenuItem> items = new ArrayList<>();
+        for (int i=0; i<ITEM_COUNT; ++i){
+            items.add(new QuadBubbleMenu.MenuItem("Item"+i, new ColorDrawable(0xff22ff22)));
+        }
+        menu.addItems(items);
+        menu.setLayoutSnapshot(snapshot);
+
+        int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        menu.measure(spec, spec);
+        menu.layout(0, 0, menu.getMeasuredWidth(), menu.getMeasuredHeight());
+        assertEquals(snapshot.getExpandedWidth(), menu.getMeasuredWidth());
+        assertEquals(snapshot.getExpandedHeight(), menu.getMeasuredHeight());
+        final View item = menu.getChildAt(ITEM_COUNT-1);
+        assertEquals((int)snapshot.getItemCenterX(ITEM_COUNT-1),
+                item.getLeft()+item.getWidth()/2);
+        assertEquals((int)snapshot.getItemCenterY(ITEM_COUNT-1),
+                item.getTop()+item.getHeight()/2);
+    }
+}
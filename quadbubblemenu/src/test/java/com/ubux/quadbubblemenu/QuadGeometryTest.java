@@ -0,0 +1,88 @@
+package com.ubux.quadbubblemenu;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class QuadGeometryTest {
+
+    private static final int ITEM_RADIUS = 40;
+    private static final int ITEM_SPACE = 16;
+    private static final int MIN_DISTANCE_TO_AXIS_VIEW = 32;
+
+    @Test
+    public void findItemAt_hitsEveryItemInEveryQuadrant() throws Exception {
+        for (int itemCount: new int[]{1, 2, 5, 20, 100}){
+            for (int quadrant=0; quadrant<8; ++quadrant){
+                QuadGeometry geometry = new QuadGeometry(itemCount, ITEM_RADIUS, ITEM_SPACE,
+                        MIN_DISTANCE_TO_AXIS_VIEW, quadrant%4<2, quadrant%2==0, quadrant>=4);
+                for (int i=0; i<itemCount; ++i){
+                    final float cx = geometry.itemCenters[2*i];
+                    final float cy = geometry.itemCenters[2*i+1];
+                    assertEquals(i, geometry.findItemAt(cx, cy, 0));
+                    assertEquals(i, geometry.findItemAt(cx+ITEM_RADIUS-1, cy, 0));
+                    assertEquals(i, geometry.findItemAt(cx, cy-ITEM_RADIUS-4, 6));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void findItemAt_missesGapsAndAxis() throws Exception {
+        QuadGeometry geometry = new QuadGeometry(5, ITEM_RADIUS, ITEM_SPACE,
+                MIN_DISTANCE_TO_AXIS_VIEW, true, true);
+        final float midX = (geometry.itemCenters[0]+geometry.itemCenters[2])/2;
+        final float midY = (geometry.itemCenters[1]+geometry.itemCenters[3])/2;
+        assertEquals(-1, geometry.findItemAt(midX, midY, 0));
+        assertEquals(-1, geometry.findItemAt(geometry.axisCx, geometry.axisCy, ITEM_SPACE/2));
+
+        QuadGeometry empty = new QuadGeometry(0, ITEM_RADIUS, ITEM_SPACE,
+                MIN_DISTANCE_TO_AXIS_VIEW, true, true);
+        assertEquals(-1, empty.findItemAt(0, 0, 0));
+    }
+
+    @Test
+    public void multiRing_keepsItemSpaceInBoundedArea() throws Exception {
+        final int itemCount = 50;
+        QuadGeometry singleArc = new QuadGeometry(itemCount, ITEM_RADIUS, ITEM_SPACE,
+                MIN_DISTANCE_TO_AXIS_VIEW, true, true, false);
+        QuadGeometry rings = new QuadGeometry(itemCount, ITEM_RADIUS, ITEM_SPACE,
+                MIN_DISTANCE_TO_AXIS_VIEW, true, true, true);
+        assertTrue(rings.getRingCount()>1);
+        assertTrue(rings.expandedWidth*3<singleArc.expandedWidth);
+
+        // Centers are truncated to whole pixels.
+        final float minDist = 2*ITEM_RADIUS+ITEM_SPACE-2;
+        final float minAxisDist = 2*ITEM_RADIUS+MIN_DISTANCE_TO_AXIS_VIEW-2;
+        for (int i=0; i<itemCount; ++i){
+            final float x = rings.itemCenters[2*i];
+            final float y = rings.itemCenters[2*i+1];
+            assertTrue(x>=ITEM_RADIUS && x<=rings.expandedWidth-ITEM_RADIUS);
+            assertTrue(y>=ITEM_RADIUS && y<=rings.expandedHeight-ITEM_RADIUS);
+            assertTrue(distance(x, y, rings.axisCx, rings.axisCy)>=minAxisDist);
+            for (int j=i+1; j<itemCount; ++j){
+                assertTrue(distance(x, y, rings.itemCenters[2*j], rings.itemCenters[2*j+1])
+                        >=minDist);
+            }
+        }
+    }
+
+    @Test
+    public void multiRing_matchesSingleArcWhenOneRingFits() throws Exception {
+        final int capacity = QuadGeometry.getRingCapacity(2*ITEM_RADIUS+MIN_DISTANCE_TO_AXIS_VIEW,
+                2*ITEM_RADIUS+ITEM_SPACE);
+        QuadGeometry singleArc = new QuadGeometry(capacity, ITEM_RADIUS, ITEM_SPACE,
+                MIN_DISTANCE_TO_AXIS_VIEW, false, false, false);
+        QuadGeometry rings = new QuadGeometry(capacity, ITEM_RADIUS, ITEM_SPACE,
+                MIN_DISTANCE_TO_AXIS_VIEW, false, false, true);
+        assertEquals(1, rings.getRingCount());
+        assertEquals(singleArc.expandedWidth, rings.expandedWidth);
+        assertArrayEquals(singleArc.itemCenters, rings.itemCenters, 0);
+    }
+
+    private static float distance(float x0, float y0, float x1, float y1){
+        return (float)Math.sqrt((x1-x0)*(x1-x0)+(y1-y0)*(y1-y0));
+    }
+}